@@ -0,0 +1,413 @@
+/*
+ * Corpus.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+/**
+ * Benchmark document. Generated corpora use a fixed random seed so that
+ * every run parses exactly the same bytes.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class Corpus {
+
+    private static final String[] WORDS = {
+        "twitter", "phone", "mobile", "java", "midlet", "coffee", "Helsinki",
+        "&amp;", "&lt;3", "&quot;quoted&quot;", "today", "release", "Nokia",
+        "E63", "väliaikainen", "Käyttäjä", "日本語", "ünïcödé", "@tlaukkanen",
+        "#twim", "http://bit.ly/abc123", "slow", "fast", "parser", "the",
+        "a", "is", "on", "with", "for", "and", "RT", "…", "&#39;s"
+    };
+
+    /** Words that do not fit on a line of a small screen */
+    private static final String[] LONG_WORDS = {
+        "http://www.substanceofcode.com/software/mobile-twitter-client-twim/?utm_source=twitter&utm_medium=status",
+        "今日は天気がいいので、公園に散歩に行きました。「楽しい」と思いました。",
+        "我们今天去公园散步了，天气非常好，大家都很开心。",
+        "#supercalifragilisticexpialidociousandthensome"
+    };
+
+    private static final String[] MONTHS = {
+        "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+        "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private static final String[] DAYS = {
+        "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"
+    };
+
+    private String name;
+    private byte[] data;
+    private byte[] firstItem;
+    private int itemCount;
+
+    /**
+     * Create corpus.
+     * @param name          Name used in reports and baseline keys.
+     * @param data          Complete document.
+     * @param firstItemEnd  End of the first item in data.
+     * @param itemCount     Number of items in the document.
+     */
+    public Corpus(String name, byte[] data, int firstItemEnd, int itemCount) {
+        this.name = name;
+        this.data = data;
+        this.itemCount = itemCount;
+        this.firstItem = new byte[firstItemEnd];
+        System.arraycopy(data, 0, firstItem, 0, firstItemEnd);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /** Document prefix that ends after the first item */
+    public byte[] getFirstItem() {
+        return firstItem;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /** Load status timeline from file */
+    public static Corpus loadTimeline(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[4096];
+            int count;
+            while((count = in.read(buffer))>0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        String text = new String(out.toByteArray(), "UTF-8");
+        int itemCount = 0;
+        int index = text.indexOf("</status>");
+        int firstItemEnd = index + 9;
+        while(index>=0) {
+            itemCount++;
+            index = text.indexOf("</status>", index + 1);
+        }
+        return new Corpus(file.getName(), out.toByteArray(),
+                text.substring(0, firstItemEnd).getBytes("UTF-8").length,
+                itemCount);
+    }
+
+    /** Generate XML status timeline */
+    public static Corpus generateTimeline(int statusCount) throws UnsupportedEncodingException {
+        Random random = new Random(statusCount);
+        StringBuffer xml = new StringBuffer();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<statuses type=\"array\">\n");
+        int firstItemEnd = 0;
+        for(int index=0; index<statusCount; index++) {
+            String screenName = "user" + random.nextInt(50);
+            xml.append("  <status>\n");
+            xml.append("    <created_at>").append(twitterDate(random)).append("</created_at>\n");
+            xml.append("    <id>").append(9000000000L - index).append("</id>\n");
+            xml.append("    <text>").append(text(random)).append("</text>\n");
+            xml.append("    <source>&lt;a href=\"http://www.substanceofcode.com/\"&gt;Twim&lt;/a&gt;</source>\n");
+            xml.append("    <truncated>false</truncated>\n");
+            if(random.nextInt(4)==0) {
+                xml.append("    <in_reply_to_status_id>").append(8000000000L + index).append("</in_reply_to_status_id>\n");
+            } else {
+                xml.append("    <in_reply_to_status_id></in_reply_to_status_id>\n");
+            }
+            xml.append("    <favorited>").append(random.nextInt(10)==0).append("</favorited>\n");
+            xml.append("    <user>\n");
+            xml.append("      <id>").append(1000 + random.nextInt(100000)).append("</id>\n");
+            xml.append("      <name>").append(screenName).append(" Name</name>\n");
+            xml.append("      <screen_name>").append(screenName).append("</screen_name>\n");
+            xml.append("      <location>Helsinki, Finland</location>\n");
+            xml.append("      <description>").append(text(random)).append("</description>\n");
+            xml.append("      <profile_image_url>http://a1.twimg.com/profile_images/").append(random.nextInt(1000000)).append("/avatar_normal.png</profile_image_url>\n");
+            xml.append("      <url>http://www.example.com/").append(screenName).append("</url>\n");
+            xml.append("      <protected>false</protected>\n");
+            xml.append("      <followers_count>").append(random.nextInt(5000)).append("</followers_count>\n");
+            xml.append("      <created_at>").append(twitterDate(random)).append("</created_at>\n");
+            xml.append("      <following>").append(random.nextBoolean()).append("</following>\n");
+            xml.append("    </user>\n");
+            xml.append("  </status>\n");
+            if(index==0) {
+                firstItemEnd = utf8Length(xml);
+            }
+        }
+        xml.append("</statuses>\n");
+        return new Corpus("timeline-" + statusCount + ".xml", xml.toString().getBytes("UTF-8"),
+                firstItemEnd, statusCount);
+    }
+
+    /** Generate JSON status timeline */
+    public static Corpus generateJsonTimeline(int statusCount) throws UnsupportedEncodingException {
+        Random random = new Random(statusCount);
+        StringBuffer json = new StringBuffer();
+        json.append("[");
+        int firstItemEnd = 0;
+        for(int index=0; index<statusCount; index++) {
+            String screenName = "user" + random.nextInt(50);
+            if(index>0) {
+                json.append(",");
+            }
+            json.append("{\"created_at\":\"").append(twitterDate(random)).append("\",");
+            json.append("\"id\":").append(9000000000L - index).append(",");
+            json.append("\"text\":\"").append(jsonEscape(text(random))).append("\",");
+            json.append("\"source\":\"\\u003Ca href=\\\"http://www.substanceofcode.com/\\\"\\u003ETwim\\u003C/a\\u003E\",");
+            json.append("\"truncated\":false,");
+            if(random.nextInt(4)==0) {
+                json.append("\"in_reply_to_status_id\":").append(8000000000L + index).append(",");
+            } else {
+                json.append("\"in_reply_to_status_id\":null,");
+            }
+            json.append("\"favorited\":").append(random.nextInt(10)==0).append(",");
+            json.append("\"user\":{\"id\":").append(1000 + random.nextInt(100000)).append(",");
+            json.append("\"name\":\"").append(screenName).append(" Name\",");
+            json.append("\"screen_name\":\"").append(screenName).append("\",");
+            json.append("\"location\":\"Helsinki, Finland\",");
+            json.append("\"description\":\"").append(jsonEscape(text(random))).append("\",");
+            json.append("\"profile_image_url\":\"http://a1.twimg.com/profile_images/").append(random.nextInt(1000000)).append("/avatar_normal.png\",");
+            json.append("\"url\":\"http://www.example.com/").append(screenName).append("\",");
+            json.append("\"protected\":false,");
+            json.append("\"followers_count\":").append(random.nextInt(5000)).append(",");
+            json.append("\"created_at\":\"").append(twitterDate(random)).append("\",");
+            json.append("\"following\":").append(random.nextBoolean()).append("}}");
+            if(index==0) {
+                firstItemEnd = utf8Length(json);
+            }
+        }
+        json.append("]");
+        return new Corpus("timeline-" + statusCount + ".json", json.toString().getBytes("UTF-8"),
+                firstItemEnd, statusCount);
+    }
+
+    /** Generate Atom search results */
+    public static Corpus generateSearch(int entryCount) throws UnsupportedEncodingException {
+        Random random = new Random(entryCount + 1);
+        StringBuffer xml = new StringBuffer();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<feed xmlns:google=\"http://base.google.com/ns/1.0\" xml:lang=\"en-US\" xmlns:openSearch=\"http://a9.com/-/spec/opensearch/1.1/\" xmlns=\"http://www.w3.org/2005/Atom\" xmlns:twitter=\"http://api.twitter.com/\">\n");
+        xml.append("  <id>tag:search.twitter.com,2005:search/twim</id>\n");
+        xml.append("  <link type=\"text/html\" href=\"http://search.twitter.com/search?q=twim\" rel=\"alternate\"/>\n");
+        xml.append("  <title>twim - Twitter Search</title>\n");
+        xml.append("  <updated>2009-07-13T20:27:58Z</updated>\n");
+        int firstItemEnd = 0;
+        for(int index=0; index<entryCount; index++) {
+            String screenName = "user" + random.nextInt(50);
+            long id = 2619936198L - index;
+            String text = text(random);
+            xml.append("  <entry>\n");
+            xml.append("    <id>tag:search.twitter.com,2005:").append(id).append("</id>\n");
+            xml.append("    <published>2009-07-").append(10 + random.nextInt(18)).append("T20:").append(10 + random.nextInt(50)).append(":58Z</published>\n");
+            xml.append("    <link type=\"text/html\" rel=\"alternate\" href=\"http://twitter.com/").append(screenName).append("/statuses/").append(id).append("\"/>\n");
+            xml.append("    <title>").append(text).append("</title>\n");
+            xml.append("    <content type=\"html\">").append(text).append("</content>\n");
+            xml.append("    <updated>2009-07-13T20:27:58Z</updated>\n");
+            xml.append("    <link type=\"image/png\" rel=\"image\" href=\"http://a1.twimg.com/profile_images/").append(random.nextInt(1000000)).append("/avatar_normal.png\"/>\n");
+            xml.append("    <twitter:source>&lt;a href=&quot;http://www.substanceofcode.com/&quot;&gt;Twim&lt;/a&gt;</twitter:source>\n");
+            xml.append("    <twitter:lang>en</twitter:lang>\n");
+            xml.append("    <author>\n");
+            xml.append("      <name>").append(screenName).append(" (Some Name)</name>\n");
+            xml.append("      <uri>http://twitter.com/").append(screenName).append("</uri>\n");
+            xml.append("    </author>\n");
+            xml.append("  </entry>\n");
+            if(index==0) {
+                firstItemEnd = utf8Length(xml);
+            }
+        }
+        xml.append("</feed>\n");
+        return new Corpus("search-" + entryCount + ".atom", xml.toString().getBytes("UTF-8"),
+                firstItemEnd, entryCount);
+    }
+
+    /** Generate XML user list with last statuses */
+    public static Corpus generateUsers(int userCount) throws UnsupportedEncodingException {
+        Random random = new Random(userCount + 2);
+        StringBuffer xml = new StringBuffer();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<users type=\"array\">\n");
+        int firstItemEnd = 0;
+        for(int index=0; index<userCount; index++) {
+            String screenName = "user" + index;
+            xml.append("  <user>\n");
+            xml.append("    <id>").append(14550388 + index).append("</id>\n");
+            xml.append("    <name>").append(screenName).append(" Name</name>\n");
+            xml.append("    <screen_name>").append(screenName).append("</screen_name>\n");
+            xml.append("    <location>Boston</location>\n");
+            xml.append("    <description>").append(text(random)).append("</description>\n");
+            xml.append("    <profile_image_url>http://a1.twimg.com/profile_images/").append(random.nextInt(1000000)).append("/avatar_normal.png</profile_image_url>\n");
+            xml.append("    <url>http://www.example.com/").append(screenName).append("</url>\n");
+            xml.append("    <protected>false</protected>\n");
+            xml.append("    <followers_count>").append(random.nextInt(5000)).append("</followers_count>\n");
+            xml.append("    <status>\n");
+            xml.append("      <created_at>").append(twitterDate(random)).append("</created_at>\n");
+            xml.append("      <id>").append(1109218902L + index).append("</id>\n");
+            xml.append("      <text>").append(text(random)).append("</text>\n");
+            xml.append("      <source>&lt;a href=\"http://www.adjix.com\"&gt;Adjix&lt;/a&gt;</source>\n");
+            xml.append("      <truncated>false</truncated>\n");
+            xml.append("      <in_reply_to_status_id></in_reply_to_status_id>\n");
+            xml.append("      <favorited>false</favorited>\n");
+            xml.append("    </status>\n");
+            xml.append("  </user>\n");
+            if(index==0) {
+                firstItemEnd = utf8Length(xml);
+            }
+        }
+        xml.append("</users>\n");
+        return new Corpus("users-" + userCount + ".xml", xml.toString().getBytes("UTF-8"),
+                firstItemEnd, userCount);
+    }
+
+    /** Generate XML lists of a user */
+    public static Corpus generateLists(int listCount) throws UnsupportedEncodingException {
+        Random random = new Random(listCount + 3);
+        StringBuffer xml = new StringBuffer();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<lists_list>\n");
+        xml.append("<lists type=\"array\">\n");
+        int firstItemEnd = 0;
+        for(int index=0; index<listCount; index++) {
+            String name = "list" + index;
+            xml.append("<list>\n");
+            xml.append("  <id>").append(2029636 + index).append("</id>\n");
+            xml.append("  <name>").append(name).append("</name>\n");
+            xml.append("  <full_name>@twitterapidocs/").append(name).append("</full_name>\n");
+            xml.append("  <slug>").append(name).append("</slug>\n");
+            xml.append("  <description>").append(text(random)).append("</description>\n");
+            xml.append("  <subscriber_count>").append(random.nextInt(100)).append("</subscriber_count>\n");
+            xml.append("  <member_count>").append(random.nextInt(500)).append("</member_count>\n");
+            xml.append("  <uri>/twitterapidocs/").append(name).append("</uri>\n");
+            xml.append("  <mode>public</mode>\n");
+            xml.append("  <user>\n");
+            xml.append("    <id>").append(6253282).append("</id>\n");
+            xml.append("    <name>Twitter API</name>\n");
+            xml.append("    <screen_name>twitterapidocs</screen_name>\n");
+            xml.append("    <description>").append(text(random)).append("</description>\n");
+            xml.append("  </user>\n");
+            xml.append("</list>\n");
+            if(index==0) {
+                firstItemEnd = utf8Length(xml);
+            }
+        }
+        xml.append("</lists>\n");
+        xml.append("<next_cursor>0</next_cursor>\n");
+        xml.append("</lists_list>\n");
+        return new Corpus("lists-" + listCount + ".xml", xml.toString().getBytes("UTF-8"),
+                firstItemEnd, listCount);
+    }
+
+    /** Generate dates in timeline, search and Atom formats, one per line */
+    public static Corpus generateDates(int dateCount) throws UnsupportedEncodingException {
+        Random random = new Random(dateCount + 4);
+        StringBuffer text = new StringBuffer();
+        int firstItemEnd = 0;
+        for(int index=0; index<dateCount; index++) {
+            String date = twitterDate(random);
+            if(index % 3==1) {
+                /** Mon, 13 Jul 2009 20:27:58 +0000 */
+                date = date.substring(0, 3) + ", " + date.substring(8, 10) + " "
+                        + date.substring(4, 7) + " " + date.substring(26) + " "
+                        + date.substring(11, 25);
+            } else if(index % 3==2) {
+                /** 2009-07-13T20:27:58Z */
+                int month = 1 + random.nextInt(12);
+                date = date.substring(26) + "-" + (month<10 ? "0" : "") + month + "-"
+                        + date.substring(8, 10) + "T" + date.substring(11, 19) + "Z";
+            }
+            text.append(date).append('\n');
+            if(index==0) {
+                firstItemEnd = text.length();
+            }
+        }
+        return new Corpus("dates-" + dateCount + ".txt", text.toString().getBytes("UTF-8"),
+                firstItemEnd, dateCount);
+    }
+
+    /** Status texts with long URLs and CJK runs, one per line */
+    public static Corpus generateTexts(int textCount) throws UnsupportedEncodingException {
+        Random random = new Random(textCount + 5);
+        StringBuffer text = new StringBuffer();
+        int firstItemEnd = 0;
+        for(int index=0; index<textCount; index++) {
+            String words = text(random);
+            int split = random.nextInt(words.length() + 1);
+            while(split<words.length() && words.charAt(split)!=' ') {
+                split++;
+            }
+            text.append(words.substring(0, split)).append(' ')
+                    .append(LONG_WORDS[index % LONG_WORDS.length])
+                    .append(words.substring(split)).append('\n');
+            if(index==0) {
+                firstItemEnd = utf8Length(text);
+            }
+        }
+        return new Corpus("texts-" + textCount + ".txt", text.toString().getBytes("UTF-8"),
+                firstItemEnd, textCount);
+    }
+
+    /** Status text of 4-25 words */
+    private static String text(Random random) {
+        StringBuffer text = new StringBuffer();
+        int wordCount = 4 + random.nextInt(22);
+        for(int index=0; index<wordCount; index++) {
+            if(index>0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /** Date in timeline format (eg. Wed Aug 29 20:14:27 +0000 2007) */
+    private static String twitterDate(Random random) {
+        return DAYS[random.nextInt(7)] + " " + MONTHS[random.nextInt(12)] + " "
+                + (10 + random.nextInt(18)) + " " + (10 + random.nextInt(14)) + ":"
+                + (10 + random.nextInt(50)) + ":" + (10 + random.nextInt(50))
+                + " +0000 " + (2007 + random.nextInt(4));
+    }
+
+    private static String jsonEscape(String text) {
+        StringBuffer escaped = new StringBuffer();
+        for(int index=0; index<text.length(); index++) {
+            char c = text.charAt(index);
+            if(c=='"' || c=='\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static int utf8Length(StringBuffer text) throws UnsupportedEncodingException {
+        return text.toString().getBytes("UTF-8").length;
+    }
+
+}
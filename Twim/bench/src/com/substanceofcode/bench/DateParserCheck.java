@@ -0,0 +1,184 @@
+/*
+ * DateParserCheck.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.bench;
+
+import com.substanceofcode.utils.DateParser;
+import java.io.PrintStream;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Correctness matrix for DateParser. Every supported format is checked
+ * against java.util.Calendar for dates across leap years, month ends and
+ * zone offsets, and malformed dates must be rejected.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class DateParserCheck {
+
+    private static final String[] MONTHS = {
+        "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+        "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private static final String[] DAYS = {
+        "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"
+    };
+
+    private static final int[][] TIMES = {
+        {0, 0, 0}, {9, 5, 7}, {12, 34, 56}, {23, 59, 59}
+    };
+
+    private static final String[] INVALID = {
+        "",
+        "garbage",
+        "Wed Foo 29 20:14:27 +0000 2007",
+        "Wed Aug 29 +0000 2007",
+        "Wed Aug 29 25:14:27 +0000 2007",
+        "Wed Aug 29 20:61:27 +0000 2007",
+        "Wed Aug 32 20:14:27 +0000 2007",
+        "Wed Aug 29 20:14:27 +0x00 2007",
+        "2009-13-13T20:27:58Z",
+        "2009-07-13T20:27:58Q",
+        "2009-07-13X20:27:58Z",
+        "2009-07-1aT20:27:58Z",
+        "2009-07-13T20:2"
+    };
+
+    private static Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+
+    private int checked = 0;
+    private int failed = 0;
+    private PrintStream out;
+
+    private DateParserCheck(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Run the matrix.
+     * @return Number of failed checks.
+     */
+    public static int run(PrintStream out) {
+        DateParserCheck check = new DateParserCheck(out);
+        check.checkMatrix();
+        check.checkInvalid();
+        out.println("DateParser: " + check.checked + " dates checked, "
+                + check.failed + " failed.");
+        return check.failed;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(System.out)==0 ? 0 : 1);
+    }
+
+    private void checkMatrix() {
+        int[] years = {1970, 1999, 2000, 2004, 2007, 2009, 2010, 2012, 2038, 2100};
+        int[] offsets = {0, 120, -300, 330, -570};
+        for(int yearIndex=0; yearIndex<years.length; yearIndex++) {
+            int year = years[yearIndex];
+            for(int month=1; month<=12; month++) {
+                int lastDay = lastDay(year, month);
+                int[] days = {1, 9, 10, 28, lastDay};
+                for(int dayIndex=0; dayIndex<days.length; dayIndex++) {
+                    int day = days[dayIndex];
+                    for(int timeIndex=0; timeIndex<TIMES.length; timeIndex++) {
+                        int[] time = TIMES[timeIndex];
+                        int offset = offsets[(yearIndex + month + dayIndex + timeIndex) % offsets.length];
+                        checkDate(year, month, day, time[0], time[1], time[2], offset);
+                    }
+                }
+            }
+        }
+        /** Named zones and two digit years */
+        expect("09 Nov 2006 23:18:49 EST", utc(2006, 11, 10, 4, 18, 49));
+        expect("Sun, 09 Aug 2009 10:00:00 PDT", utc(2009, 8, 9, 17, 0, 0));
+        expect("Sun, 09 Aug 2009 10:00:00 GMT", utc(2009, 8, 9, 10, 0, 0));
+        expect("Thu, 19 Jul 07 00:00:00 +0000", utc(2007, 7, 19, 0, 0, 0));
+        expect("Thu, 19 Jul  2007 00:00:00 N", utc(2007, 7, 19, 0, 0, 0));
+        expect("  Wed Aug 29 20:14:27 +0000 2007\n", utc(2007, 8, 29, 20, 14, 27));
+        expect("2009-07-13", utc(2009, 7, 13, 0, 0, 0));
+        expect("2009-07-13 20:27", utc(2009, 7, 13, 20, 27, 0));
+        expect("2009-07-13T20:27:58.123Z", utc(2009, 7, 13, 20, 27, 58) + 123);
+    }
+
+    private void checkDate(int year, int month, int day, int hours, int minutes,
+            int seconds, int offset) {
+        long expected = utc(year, month, day, hours, minutes, seconds) - offset * 60000L;
+        String weekDay = DAYS[weekDay(year, month, day)];
+        String time = pad(hours) + ":" + pad(minutes) + ":" + pad(seconds);
+        String zone = zone(offset, "");
+        expect(weekDay + " " + MONTHS[month - 1] + " " + pad(day) + " " + time
+                + " " + zone + " " + year, expected);
+        expect(weekDay + ", " + day + " " + MONTHS[month - 1] + " " + year + " "
+                + time + " " + zone, expected);
+        expect(pad(day) + " " + MONTHS[month - 1] + " " + year + " " + time
+                + " " + zone, expected);
+        expect(year + "-" + pad(month) + "-" + pad(day) + "T" + time
+                + (offset==0 ? "Z" : zone(offset, ":")), expected);
+        expect(year + "-" + pad(month) + "-" + pad(day) + "T" + time
+                + ".500" + zone(offset, ""), expected + 500);
+    }
+
+    private void checkInvalid() {
+        for(int index=0; index<INVALID.length; index++) {
+            expect(INVALID[index], DateParser.INVALID);
+        }
+    }
+
+    private void expect(String text, long expected) {
+        checked++;
+        char[] chars = ("##" + text + "##").toCharArray();
+        long parsed = DateParser.parse(chars, 2, text.length());
+        if(parsed!=expected) {
+            failed++;
+            out.println("  FAILED '" + text + "': expected " + expected + ", got " + parsed);
+        }
+    }
+
+    private static long utc(int year, int month, int day, int hours, int minutes, int seconds) {
+        calendar.clear();
+        calendar.set(year, month - 1, day, hours, minutes, seconds);
+        return calendar.getTime().getTime();
+    }
+
+    private static int weekDay(int year, int month, int day) {
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+    }
+
+    private static int lastDay(int year, int month) {
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        return calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+    }
+
+    private static String zone(int offset, String separator) {
+        int minutes = Math.abs(offset);
+        return (offset<0 ? "-" : "+") + pad(minutes / 60) + separator + pad(minutes % 60);
+    }
+
+    private static String pad(int value) {
+        return value<10 ? "0" + value : String.valueOf(value);
+    }
+
+}
@@ -0,0 +1,541 @@
+/*
+ * ParserBenchmark.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.bench;
+
+import com.substanceofcode.twitter.JsonStatusFeedParser;
+import com.substanceofcode.twitter.ListsParser;
+import com.substanceofcode.twitter.SearchResultsParser;
+import com.substanceofcode.twitter.StatusFeedParser;
+import com.substanceofcode.twitter.UsersParser;
+import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.DateParser;
+import com.substanceofcode.utils.LineBreaker;
+import com.substanceofcode.utils.Log;
+import com.substanceofcode.utils.XmlParser;
+import com.substanceofcode.utils.XmlSymbolTable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Vector;
+
+/**
+ * Runs the feed parsers on a desktop JVM and reports throughput,
+ * allocation per parsed item and time to first item. Results are
+ * compared with a baseline file that is written with -update. Wrapping
+ * of status texts to lines is measured the same way.
+ *
+ * Usage: ParserBenchmark timeline.xml baseline.properties [-update]
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class ParserBenchmark {
+
+    /** Measured time of each round */
+    private static final long ROUND_NANOS = 300 * 1000000L;
+    private static final long WARMUP_NANOS = 1000 * 1000000L;
+    private static final int ROUNDS = 5;
+
+    /** Changes flagged in the comparison, in percent */
+    private static final int TIME_TOLERANCE = 20;
+    private static final int ALLOCATION_TOLERANCE = 2;
+
+    private static final String TIME_KEY = ".us_per_doc";
+    private static final String ALLOCATION_KEY = ".bytes_per_item";
+    private static final String FIRST_ITEM_KEY = ".first_item_us";
+    private static final String RETAINED_KEY = ".retained_bytes_per_item";
+
+    /** Line widths of the wrapping cases, in pixels */
+    private static final int[] WRAP_WIDTHS = {176, 240, 360};
+
+    private static PrintStream out = System.out;
+
+    /** Parser run on one corpus */
+    private abstract static class Case {
+        String parserName;
+        Corpus corpus;
+
+        Case(String parserName, Corpus corpus) {
+            this.parserName = parserName;
+            this.corpus = corpus;
+        }
+
+        String getKey() {
+            return parserName + "." + corpus.getName();
+        }
+
+        /** Parse document and return the number of parsed items */
+        abstract int parse(byte[] data) throws IOException;
+    }
+
+    /** Median results of a case */
+    private static class Result {
+        double documentMicros;
+        double firstItemMicros;
+        long bytesPerItem;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length<2) {
+            out.println("Usage: ParserBenchmark timeline.xml baseline.properties [-update]");
+            System.exit(1);
+        }
+        if(DateParserCheck.run(out)>0) {
+            System.exit(1);
+        }
+        File baselineFile = new File(args[1]);
+        boolean update = args.length>2 && args[2].equals("-update");
+
+        Corpus friends = Corpus.loadTimeline(new File(args[0]));
+        Corpus timeline200 = Corpus.generateTimeline(200);
+        Corpus timeline1000 = Corpus.generateTimeline(1000);
+        Vector cases = new Vector();
+        cases.addElement(xmlParserCase(friends));
+        cases.addElement(xmlParserCase(timeline1000));
+        cases.addElement(statusFeedCase(friends));
+        cases.addElement(statusFeedCase(timeline200));
+        cases.addElement(statusFeedCase(timeline1000));
+        cases.addElement(jsonStatusFeedCase(Corpus.generateJsonTimeline(200)));
+        cases.addElement(searchCase(Corpus.generateSearch(200)));
+        cases.addElement(usersCase(Corpus.generateUsers(200)));
+        cases.addElement(listsCase(Corpus.generateLists(100)));
+        cases.addElement(dateCase(Corpus.generateDates(1000)));
+        String[] friendsTexts = statusTexts(friends);
+        Corpus texts200 = Corpus.generateTexts(200);
+        String[] generatedTexts = lines(texts200);
+        for(int index=0; index<WRAP_WIDTHS.length; index++) {
+            cases.addElement(lineBreakerCase(friends, friendsTexts, WRAP_WIDTHS[index]));
+            cases.addElement(lineBreakerCase(texts200, generatedTexts, WRAP_WIDTHS[index]));
+        }
+
+        Properties baseline = new Properties();
+        if(baselineFile.exists()) {
+            FileInputStream in = new FileInputStream(baselineFile);
+            try {
+                baseline.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        Properties results = new Properties();
+
+        /** Parsers log to standard output, keep it out of the report */
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+
+        if(!isAllocationSupported()) {
+            out.println("Allocation counters are not supported by this JVM.");
+        }
+        out.println(pad("parser", 22) + pad("corpus", 20) + padLeft("items", 6)
+                + padLeft("KB", 7) + padLeft("us/doc", 10) + padLeft("MB/s", 8)
+                + padLeft("items/s", 10) + padLeft("B/item", 8) + padLeft("first us", 10));
+        int regressions = 0;
+        for(int index=0; index<cases.size(); index++) {
+            Case benchCase = (Case)cases.elementAt(index);
+            Result result = measure(benchCase);
+            Corpus corpus = benchCase.corpus;
+            double seconds = result.documentMicros / 1000000.0;
+            out.println(pad(benchCase.parserName, 22)
+                    + pad(corpus.getName(), 20)
+                    + padLeft(String.valueOf(corpus.getItemCount()), 6)
+                    + padLeft(String.valueOf(corpus.getData().length / 1024), 7)
+                    + padLeft(format(result.documentMicros), 10)
+                    + padLeft(format(corpus.getData().length / seconds / 1048576.0), 8)
+                    + padLeft(String.valueOf(Math.round(corpus.getItemCount() / seconds)), 10)
+                    + padLeft(String.valueOf(result.bytesPerItem), 8)
+                    + padLeft(format(result.firstItemMicros), 10));
+            String key = benchCase.getKey();
+            regressions += compare(baseline, key + TIME_KEY, result.documentMicros, TIME_TOLERANCE);
+            regressions += compare(baseline, key + ALLOCATION_KEY, result.bytesPerItem, ALLOCATION_TOLERANCE);
+            regressions += compare(baseline, key + FIRST_ITEM_KEY, result.firstItemMicros, TIME_TOLERANCE);
+            results.setProperty(key + TIME_KEY, format(result.documentMicros));
+            results.setProperty(key + ALLOCATION_KEY, String.valueOf(result.bytesPerItem));
+            results.setProperty(key + FIRST_ITEM_KEY, format(result.firstItemMicros));
+        }
+
+        /** Heap kept by a parsed timeline, ie. the size of the Status model */
+        long retainedBytes = retainedBytesPerStatus(timeline1000);
+        String retainedKey = "StatusFeedParser." + timeline1000.getName() + RETAINED_KEY;
+        out.println("Retained heap per status in " + timeline1000.getName() + ": "
+                + retainedBytes + " B");
+        regressions += compare(baseline, retainedKey, retainedBytes, ALLOCATION_TOLERANCE);
+        results.setProperty(retainedKey, String.valueOf(retainedBytes));
+
+        if(update) {
+            writeBaseline(baselineFile, results);
+            out.println("Baseline written to " + baselineFile);
+        } else if(baseline.isEmpty()) {
+            out.println("No baseline in " + baselineFile + ", run: ant bench-baseline");
+        } else {
+            out.println(regressions + " result(s) worse than baseline.");
+        }
+    }
+
+    /** Write results sorted by key so that baseline changes diff well */
+    private static void writeBaseline(File file, Properties results) throws IOException {
+        Object[] keys = results.keySet().toArray();
+        Arrays.sort(keys);
+        PrintStream stream = new PrintStream(new FileOutputStream(file), false, "ISO-8859-1");
+        try {
+            stream.println("# Parser benchmark baseline, update with: ant bench-baseline");
+            stream.println("# Times depend on the machine, allocation should not.");
+            for(int index=0; index<keys.length; index++) {
+                stream.println(keys[index] + "=" + results.getProperty((String)keys[index]));
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /** Measure median document time, allocation and time to first item */
+    private static Result measure(Case benchCase) throws IOException {
+        Corpus corpus = benchCase.corpus;
+        int count = benchCase.parse(corpus.getData());
+        if(count!=corpus.getItemCount()) {
+            throw new IOException(benchCase.getKey() + " parsed " + count
+                    + " items, expected " + corpus.getItemCount());
+        }
+        if(benchCase.parse(corpus.getFirstItem())<1) {
+            throw new IOException(benchCase.getKey() + " did not parse the first item");
+        }
+        Result result = new Result();
+        double[] documentMicros = new double[ROUNDS];
+        double[] firstItemMicros = new double[ROUNDS];
+        long[] bytesPerItem = new long[ROUNDS];
+        int iterations = warmUp(benchCase, corpus.getData());
+        int firstItemIterations = warmUp(benchCase, corpus.getFirstItem());
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for(int round=0; round<ROUNDS; round++) {
+            long allocated = allocatedBytes(threads);
+            long start = System.nanoTime();
+            for(int iteration=0; iteration<iterations; iteration++) {
+                Log.clear();
+                benchCase.parse(corpus.getData());
+            }
+            long end = System.nanoTime();
+            documentMicros[round] = (end - start) / 1000.0 / iterations;
+            bytesPerItem[round] = (allocatedBytes(threads) - allocated)
+                    / ((long)iterations * corpus.getItemCount());
+
+            start = System.nanoTime();
+            for(int iteration=0; iteration<firstItemIterations; iteration++) {
+                Log.clear();
+                benchCase.parse(corpus.getFirstItem());
+            }
+            end = System.nanoTime();
+            firstItemMicros[round] = (end - start) / 1000.0 / firstItemIterations;
+        }
+        Arrays.sort(documentMicros);
+        Arrays.sort(firstItemMicros);
+        Arrays.sort(bytesPerItem);
+        result.documentMicros = documentMicros[ROUNDS / 2];
+        result.firstItemMicros = firstItemMicros[ROUNDS / 2];
+        result.bytesPerItem = isAllocationSupported() ? bytesPerItem[ROUNDS / 2] : -1;
+        return result;
+    }
+
+    /**
+     * Measure heap retained by the statuses of a timeline. Used heap is
+     * sampled after full collections before and after parsing.
+     * @return Median bytes per status.
+     */
+    private static long retainedBytesPerStatus(Corpus corpus) throws IOException {
+        long[] bytesPerStatus = new long[ROUNDS];
+        Vector statuses = null;
+        for(int round=0; round<ROUNDS; round++) {
+            /** Release the previous round before sampling */
+            statuses = null;
+            Log.clear();
+            long before = usedHeap();
+            statuses = parseTimeline(corpus.getData());
+            Log.clear();
+            long after = usedHeap();
+            bytesPerStatus[round] = (after - before) / statuses.size();
+        }
+        Arrays.sort(bytesPerStatus);
+        return bytesPerStatus[ROUNDS / 2];
+    }
+
+    private static Vector parseTimeline(byte[] data) throws IOException {
+        StatusFeedParser parser = new StatusFeedParser();
+        parser.parse(stream(data));
+        return parser.getStatuses();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int index=0; index<3; index++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Run the case until the JIT has settled.
+     * @return Iterations needed for one measured round.
+     */
+    private static int warmUp(Case benchCase, byte[] data) throws IOException {
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            Log.clear();
+            benchCase.parse(data);
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while(elapsed<WARMUP_NANOS || iterations<10);
+        long perIteration = elapsed / iterations;
+        return (int)Math.max(1, ROUND_NANOS / Math.max(1, perIteration));
+    }
+
+    /**
+     * Print change against baseline value.
+     * @return 1 if the result is worse than the tolerance allows.
+     */
+    private static int compare(Properties baseline, String key, double value, int tolerance) {
+        String baselineValue = baseline.getProperty(key);
+        if(baselineValue==null || value<0) {
+            return 0;
+        }
+        double previous = Double.parseDouble(baselineValue);
+        if(previous<=0) {
+            return 0;
+        }
+        double change = (value - previous) * 100.0 / previous;
+        boolean worse = change>tolerance;
+        if(worse || change< -tolerance) {
+            out.println("    " + (worse ? "WORSE  " : "better ") + key + ": "
+                    + format(previous) + " -> " + format(value)
+                    + " (" + (change>0 ? "+" : "") + format(change) + "%)");
+        }
+        return worse ? 1 : 0;
+    }
+
+    private static boolean isAllocationSupported() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported();
+    }
+
+    /** Bytes allocated by the current thread, 0 if not supported */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if(!isAllocationSupported()) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+
+    private static Case xmlParserCase(Corpus corpus) {
+        final XmlSymbolTable symbols = new XmlSymbolTable();
+        symbols.addPath("status", 0);
+        symbols.addPath("status/text", 1);
+        return new Case("XmlParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                XmlParser xml = new XmlParser(stream(data), symbols);
+                int count = 0;
+                while(xml.parse()!=XmlParser.END_DOCUMENT) {
+                    int pathId = xml.getPathId();
+                    if(pathId==0) {
+                        count++;
+                    } else if(pathId==1) {
+                        xml.getText();
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    private static Case statusFeedCase(Corpus corpus) {
+        return new Case("StatusFeedParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                StatusFeedParser parser = new StatusFeedParser();
+                parser.parse(stream(data));
+                return parser.getStatuses().size();
+            }
+        };
+    }
+
+    private static Case jsonStatusFeedCase(Corpus corpus) {
+        return new Case("JsonStatusFeedParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                StatusFeedParser parser = new JsonStatusFeedParser();
+                parser.parse(stream(data));
+                return parser.getStatuses().size();
+            }
+        };
+    }
+
+    private static Case searchCase(Corpus corpus) {
+        return new Case("SearchResultsParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                SearchResultsParser parser = new SearchResultsParser();
+                parser.parse(stream(data));
+                return parser.getStatuses().size();
+            }
+        };
+    }
+
+    private static Case usersCase(Corpus corpus) {
+        return new Case("UsersParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                UsersParser parser = new UsersParser();
+                parser.parse(stream(data));
+                return parser.getUsers().size();
+            }
+        };
+    }
+
+    private static Case listsCase(Corpus corpus) {
+        return new Case("ListsParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                ListsParser parser = new ListsParser();
+                parser.parse(stream(data));
+                return parser.getUserLists().size();
+            }
+        };
+    }
+
+    private static Case dateCase(Corpus corpus) {
+        final char[] line = new char[64];
+        return new Case("DateParser", corpus) {
+            int parse(byte[] data) throws IOException {
+                int count = 0;
+                int length = 0;
+                for(int index=0; index<data.length; index++) {
+                    if(data[index]=='\n') {
+                        if(DateParser.parse(line, 0, length)!=DateParser.INVALID) {
+                            count++;
+                        }
+                        length = 0;
+                    } else {
+                        line[length++] = (char)data[index];
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Wrap texts of the corpus. The whole document wraps all texts and
+     * the first item document only the first text, so that parse times
+     * compare with the parser cases.
+     */
+    private static Case lineBreakerCase(Corpus corpus, final String[] texts, final int width) {
+        final LineBreaker breaker = new BenchLineBreaker();
+        return new Case("LineBreaker-" + width + "px", corpus) {
+            int parse(byte[] data) {
+                int count = (data==corpus.getFirstItem() ? 1 : texts.length);
+                for(int index=0; index<count; index++) {
+                    breaker.breakLines(texts[index], width);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Character widths close to the small system font of S60 phones, so
+     * that wrapping can be measured without a MIDP implementation.
+     */
+    private static class BenchLineBreaker extends LineBreaker {
+        BenchLineBreaker() {
+            super(null);
+        }
+
+        protected int measure(char c) {
+            if(c>=0x2E80) {
+                return 12;
+            } else if("il.,:;'|!".indexOf(c)>=0) {
+                return 2;
+            } else if("mwMW@".indexOf(c)>=0) {
+                return 8;
+            } else if(c==' ') {
+                return 3;
+            } else if(Character.isUpperCase(c)) {
+                return 7;
+            }
+            return 5;
+        }
+    }
+
+    private static String[] statusTexts(Corpus corpus) throws IOException {
+        Vector statuses = parseTimeline(corpus.getData());
+        String[] texts = new String[statuses.size()];
+        for(int index=0; index<texts.length; index++) {
+            texts[index] = ((Status)statuses.elementAt(index)).getText();
+        }
+        return texts;
+    }
+
+    private static String[] lines(Corpus corpus) throws IOException {
+        String text = new String(corpus.getData(), "UTF-8");
+        Vector lines = new Vector();
+        int start = 0;
+        int end;
+        while((end = text.indexOf('\n', start))>=0) {
+            lines.addElement(text.substring(start, end));
+            start = end + 1;
+        }
+        String[] result = new String[lines.size()];
+        lines.copyInto(result);
+        return result;
+    }
+
+    private static CustomInputStream stream(byte[] data) {
+        return new CustomInputStream(new ByteArrayInputStream(data));
+    }
+
+    private static String format(double value) {
+        if(value>=100 || value<=-100) {
+            return String.valueOf(Math.round(value));
+        }
+        return String.valueOf(Math.round(value * 10) / 10.0);
+    }
+
+    private static String pad(String text, int width) {
+        StringBuffer padded = new StringBuffer(text);
+        while(padded.length()<width) {
+            padded.append(' ');
+        }
+        return padded.toString();
+    }
+
+    private static String padLeft(String text, int width) {
+        StringBuffer padded = new StringBuffer();
+        while(padded.length() + text.length()<width) {
+            padded.append(' ');
+        }
+        return padded.append(text).toString();
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package com.substanceofcode.google;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.utils.StringUtil;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,9 +42,14 @@ public class GoogleTranslate {
      */
     public static String translate(String text) {
         HttpConnection hc = null;
+        TaskProgress progress = TaskProgress.getCurrent();
         try {
             String url = SERVICE_URL + StringUtil.urlEncode(text);
             hc = (HttpConnection) Connector.open(url);
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(hc);
+            }
             InputStream his = hc.openInputStream();
 
             // Prepare buffer for input data
@@ -55,6 +61,9 @@ public class GoogleTranslate {
                 inputBuffer.append((char) inputCharacter);
             }
             String response = inputBuffer.toString();
+            if(progress!=null) {
+                progress.addReceivedBytes(response.length());
+            }
             String startText = "translatedText\":\"";
             int startIndex = response.indexOf( startText );
             if(startIndex>0) {
@@ -68,6 +77,9 @@ public class GoogleTranslate {
         } catch (IOException ex) {
             return "Error " + ex.getMessage();
         } finally {
+            if(progress!=null) {
+                progress.setConnection(null);
+            }
             if(hc!=null) {
                 try {
                     hc.close();
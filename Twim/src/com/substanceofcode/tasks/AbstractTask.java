@@ -25,11 +25,16 @@ package com.substanceofcode.tasks;
  */
 public abstract class AbstractTask implements Runnable {
     
-    private Thread executionThread;
+    private int priority = TaskExecutor.PRIORITY_USER;
+    private TaskFuture future;
+    private TaskProgress progress = new TaskProgress();
         
-    public void execute() {
-        executionThread = new Thread(this);
-        executionThread.start();
+    /**
+     * Queue the task to be run by a worker thread.
+     * @return Future of the task, or of identical task already in flight.
+     */
+    public TaskFuture execute() {
+        return TaskExecutor.getInstance().submit(this);
     }
 
     public void run() {
@@ -37,5 +42,36 @@ public abstract class AbstractTask implements Runnable {
     }
     
     public abstract void doTask();
+
+    /**
+     * Get key that identifies the request made by the task. Task is not
+     * run when a task with the same key is already queued or running.
+     * @return Key or null if the task is always run.
+     */
+    public String getKey() {
+        return null;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /** Set TaskExecutor.PRIORITY_USER or PRIORITY_BACKGROUND */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /** Check if the task has been cancelled while running */
+    public boolean isCancelled() {
+        return future!=null && future.isCancelled();
+    }
+
+    public TaskProgress getProgress() {
+        return progress;
+    }
+
+    void setFuture(TaskFuture future) {
+        this.future = future;
+    }
         
 }
@@ -0,0 +1,184 @@
+/*
+ * TaskExecutor.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.tasks;
+
+import com.substanceofcode.utils.Log;
+import java.util.Hashtable;
+import java.util.Timer;
+import java.util.Vector;
+
+/**
+ * Runs tasks on a fixed number of worker threads. Tasks started by the
+ * user are taken before background tasks, and background tasks never
+ * occupy all workers so that there is always one free for the user.
+ * A task with the same key as a queued or running task is not run again,
+ * the future of the earlier task is returned instead unless it has been
+ * cancelled. A background task that is shared with the user is moved to
+ * the user queue, or run at user priority if a worker has already taken
+ * it.
+ *
+ * The executor also owns the timer shared by periodic jobs.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class TaskExecutor implements Runnable {
+
+    /** Priority of tasks started by the user */
+    public static final int PRIORITY_USER = 0;
+    /** Priority of tasks such as automatic refresh */
+    public static final int PRIORITY_BACKGROUND = 1;
+
+    private static final int WORKER_COUNT = 2;
+
+    private static TaskExecutor instance;
+
+    /** Queued futures of each priority */
+    private Vector[] queues = { new Vector(), new Vector() };
+    /** Queued and running futures by key */
+    private Hashtable inFlight = new Hashtable();
+    private int runningBackgroundTasks;
+    private Timer timer;
+
+    private TaskExecutor() {
+        for(int index=0; index<WORKER_COUNT; index++) {
+            new Thread(this).start();
+        }
+    }
+
+    public static synchronized TaskExecutor getInstance() {
+        if(instance==null) {
+            instance = new TaskExecutor();
+        }
+        return instance;
+    }
+
+    /** Get timer shared by periodic jobs */
+    public synchronized Timer getTimer() {
+        if(timer==null) {
+            timer = new Timer();
+        }
+        return timer;
+    }
+
+    /**
+     * Queue task for execution.
+     * @return Future of the task, or of identical task already in flight.
+     */
+    public synchronized TaskFuture submit(AbstractTask task) {
+        String key = task.getKey();
+        if(key!=null) {
+            TaskFuture running = (TaskFuture)inFlight.get(key);
+            if(running!=null && running.share()) {
+                Log.debug("Already in progress: " + key);
+                if(task.getPriority()==PRIORITY_USER) {
+                    promote(running);
+                }
+                return running;
+            }
+        }
+        TaskFuture future = new TaskFuture(task, key);
+        task.setFuture(future);
+        if(key!=null) {
+            inFlight.put(key, future);
+        }
+        queues[task.getPriority()].addElement(future);
+        notifyAll();
+        return future;
+    }
+
+    /** Run background task at user priority since the user waits for it */
+    private void promote(TaskFuture future) {
+        AbstractTask task = future.getTask();
+        if(task.getPriority()!=PRIORITY_BACKGROUND) {
+            return;
+        }
+        if(queues[PRIORITY_BACKGROUND].removeElement(future)) {
+            queues[PRIORITY_USER].addElement(future);
+        } else {
+            /** Already taken by a worker, which no longer counts as background */
+            runningBackgroundTasks--;
+        }
+        future.promote();
+        notifyAll();
+    }
+
+    /** Remove cancelled task from its queue */
+    synchronized void remove(TaskFuture future) {
+        AbstractTask task = future.getTask();
+        if(queues[task.getPriority()].removeElement(future)) {
+            removeKey(future);
+        }
+    }
+
+    public void run() {
+        while(true) {
+            TaskFuture future = take();
+            TaskProgress.setCurrent(future.getTask().getProgress());
+            try {
+                future.run();
+            } catch(Throwable t) {
+                Log.error("Task failed: " + t.toString());
+            }
+            TaskProgress.setCurrent(null);
+            finished(future);
+        }
+    }
+
+    /** Wait for the next task that may be run */
+    private synchronized TaskFuture take() {
+        while(true) {
+            Vector queue = queues[PRIORITY_USER];
+            if(queue.isEmpty()
+                    && runningBackgroundTasks<WORKER_COUNT - 1) {
+                queue = queues[PRIORITY_BACKGROUND];
+            }
+            if(!queue.isEmpty()) {
+                TaskFuture future = (TaskFuture)queue.elementAt(0);
+                queue.removeElementAt(0);
+                if(queue==queues[PRIORITY_BACKGROUND]) {
+                    runningBackgroundTasks++;
+                }
+                return future;
+            }
+            try {
+                wait();
+            } catch(InterruptedException ex) {
+                Log.error("TaskExecutor.take: " + ex.getMessage());
+            }
+        }
+    }
+
+    private synchronized void finished(TaskFuture future) {
+        /** Promoted tasks were uncounted when they were promoted */
+        if(future.getTask().getPriority()==PRIORITY_BACKGROUND) {
+            runningBackgroundTasks--;
+        }
+        removeKey(future);
+        notifyAll();
+    }
+
+    private void removeKey(TaskFuture future) {
+        String key = future.getKey();
+        if(key!=null && inFlight.get(key)==future) {
+            inFlight.remove(key);
+        }
+    }
+
+}
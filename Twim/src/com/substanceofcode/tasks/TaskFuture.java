@@ -0,0 +1,154 @@
+/*
+ * TaskFuture.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.tasks;
+
+/**
+ * Handle to a task queued in TaskExecutor. A queued task can be
+ * cancelled before it starts. Cancelling a running task closes its
+ * connection, and the task stops early by checking
+ * AbstractTask.isCancelled().
+ *
+ * Identical requests share one future. The task is cancelled only when
+ * every caller that shares it has cancelled.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class TaskFuture {
+
+    private AbstractTask task;
+    private String key;
+    private boolean isStarted;
+    private boolean isDone;
+    private boolean isCancelled;
+    /** Callers that have not cancelled */
+    private int holders = 1;
+    /** Worker running the task */
+    private Thread thread;
+
+    TaskFuture(AbstractTask task, String key) {
+        this.task = task;
+        this.key = key;
+    }
+
+    public AbstractTask getTask() {
+        return task;
+    }
+
+    /** Get key of identical requests, null if task is not shared */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Add a caller of an identical request.
+     * @return false if the task is already done or cancelled.
+     */
+    synchronized boolean share() {
+        if(isDone || isCancelled) {
+            return false;
+        }
+        holders++;
+        return true;
+    }
+
+    /**
+     * Run the task at user priority. A worker that has already taken the
+     * task picks up the priority when it starts running it.
+     */
+    synchronized void promote() {
+        task.setPriority(TaskExecutor.PRIORITY_USER);
+        if(thread!=null) {
+            thread.setPriority(Thread.NORM_PRIORITY);
+        }
+    }
+
+    /**
+     * Cancel the task for this caller. The task is cancelled when no
+     * other caller is sharing it.
+     * @return true if the task had not started and will not be run.
+     */
+    public boolean cancel() {
+        boolean isRemoved;
+        synchronized(this) {
+            if(isDone) {
+                return false;
+            }
+            holders--;
+            if(holders>0) {
+                return false;
+            }
+            isCancelled = true;
+            isRemoved = !isStarted;
+            if(isRemoved) {
+                isDone = true;
+                notifyAll();
+            }
+        }
+        if(isRemoved) {
+            TaskExecutor.getInstance().remove(this);
+        } else {
+            task.getProgress().cancel();
+        }
+        return isRemoved;
+    }
+
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /** Check if task has completed or was cancelled before it started */
+    public synchronized boolean isDone() {
+        return isDone;
+    }
+
+    /** Wait until the task is done */
+    public synchronized void waitFor() throws InterruptedException {
+        while(!isDone) {
+            wait();
+        }
+    }
+
+    /** Run the task unless it was cancelled while queued */
+    void run() {
+        synchronized(this) {
+            if(isCancelled) {
+                isDone = true;
+                notifyAll();
+                return;
+            }
+            isStarted = true;
+            thread = Thread.currentThread();
+            boolean isBackground =
+                    task.getPriority()==TaskExecutor.PRIORITY_BACKGROUND;
+            thread.setPriority(
+                    isBackground ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY);
+        }
+        try {
+            task.run();
+        } finally {
+            synchronized(this) {
+                thread = null;
+                isDone = true;
+                notifyAll();
+            }
+        }
+    }
+
+}
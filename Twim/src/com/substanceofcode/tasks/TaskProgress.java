@@ -0,0 +1,137 @@
+/*
+ * TaskProgress.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.tasks;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import javax.microedition.io.Connection;
+
+/**
+ * Progress of a running task: bytes sent and received, items parsed and
+ * time elapsed. The progress of the task that runs in the current thread
+ * is found with getCurrent(), so that network and parser code can report
+ * to it without knowing the task.
+ *
+ * Cancelling closes the connection the task is using, which makes a read
+ * or write blocked on a dead connection fail.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class TaskProgress {
+
+    /** Progress of the task running in each worker thread */
+    private static Hashtable current = new Hashtable();
+
+    private long startTime;
+    private int bytesReceived;
+    private int bytesSent;
+    private int itemCount;
+    private boolean isCancelled;
+    private Connection connection;
+
+    /** Get progress of the task running in current thread or null */
+    public static TaskProgress getCurrent() {
+        return (TaskProgress)current.get(Thread.currentThread());
+    }
+
+    /** Set progress of the task that starts in current thread */
+    static void setCurrent(TaskProgress progress) {
+        if(progress==null) {
+            current.remove(Thread.currentThread());
+        } else {
+            progress.startTime = System.currentTimeMillis();
+            current.put(Thread.currentThread(), progress);
+        }
+    }
+
+    public synchronized void addReceivedBytes(int count) {
+        bytesReceived += count;
+    }
+
+    public synchronized void addSentBytes(int count) {
+        bytesSent += count;
+    }
+
+    /** Add parsed status or other item */
+    public synchronized void addItem() {
+        itemCount++;
+    }
+
+    public synchronized int getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public synchronized int getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized int getItemCount() {
+        return itemCount;
+    }
+
+    /** Get milliseconds since the task started, 0 if it has not started */
+    public synchronized long getElapsedTime() {
+        if(startTime==0) {
+            return 0;
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Set connection that is closed if the task is cancelled.
+     * @param connection    Open connection or null when it has been closed.
+     */
+    public void setConnection(Connection connection) {
+        boolean isClosed;
+        synchronized(this) {
+            this.connection = connection;
+            isClosed = isCancelled;
+        }
+        if(isClosed) {
+            close(connection);
+        }
+    }
+
+    /** Cancel the task and close its connection */
+    public void cancel() {
+        Connection openConnection;
+        synchronized(this) {
+            isCancelled = true;
+            openConnection = connection;
+            connection = null;
+        }
+        close(openConnection);
+    }
+
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    private static void close(Connection connection) {
+        if(connection!=null) {
+            try {
+                connection.close();
+            } catch(IOException ex) {
+                /** Connection is being abandoned anyway */
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * JsonListsParser.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.twitter;
+
+import com.substanceofcode.twitter.model.UserList;
+import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.JsonParser;
+import com.substanceofcode.utils.XmlSymbolTable;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Parser for user lists in JSON format.
+ *
+ * {"lists":[
+ *   {"id":2029636,
+ *    "name":"firemen",
+ *    "full_name":"@twitterapidocs/firemen",
+ *    "uri":"/twitterapidocs/firemen",
+ *    "user":{...}}],
+ *  "next_cursor":0}
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class JsonListsParser extends ListsParser {
+
+    /** Field paths handled by the parser */
+    private static final int LISTS = 0;
+    private static final int NAME = 1;
+    private static final int URI = 2;
+    private static final int ID = 3;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("lists", LISTS);
+        SYMBOLS.addPath("lists/name", NAME);
+        SYMBOLS.addPath("lists/uri", URI);
+        SYMBOLS.addPath("lists/id", ID);
+    }
+
+    public void parse(CustomInputStream is) throws IOException {
+        try {
+            JsonParser json = new JsonParser(is, SYMBOLS);
+            userLists = new Vector();
+            String name = "";
+            String uri = "";
+            String id = "";
+            boolean listStarted = false;
+            int event;
+            while ((event = json.next()) != JsonParser.END_DOCUMENT) {
+                Thread.yield();
+                switch(event) {
+                    case JsonParser.START_OBJECT:
+                        if(json.getDepth()==3 && json.getPathId()==LISTS) {
+                            listStarted = true;
+                            name = "";
+                            uri = "";
+                            id = "";
+                        }
+                        break;
+                    case JsonParser.END_OBJECT:
+                        if(listStarted && json.getDepth()==2) {
+                            userLists.addElement( new UserList(id, name, uri) );
+                            listStarted = false;
+                        }
+                        break;
+                    case JsonParser.FIELD_NAME:
+                        switch(json.getPathId()) {
+                            case LISTS:
+                                break;
+                            case NAME:
+                                name = json.nextText();
+                                break;
+                            case URI:
+                                uri = json.nextText();
+                                break;
+                            case ID:
+                                id = json.nextText();
+                                break;
+                            default:
+                                /** Skip list owner and other unused fields */
+                                json.skipValue();
+                                break;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException ex) {
+            throw new IOException("IOException in JsonListsParser.parse(): " + ex.getMessage());
+        }
+    }
+
+}
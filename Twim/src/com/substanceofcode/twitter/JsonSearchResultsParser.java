@@ -0,0 +1,138 @@
+/*
+ * JsonSearchResultsParser.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.twitter;
+
+import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.EntityDecoder;
+import com.substanceofcode.utils.JsonParser;
+import com.substanceofcode.utils.XmlSymbolTable;
+import java.io.IOException;
+
+/**
+ * Parser for search results in JSON format.
+ *
+ * {"results":[
+ *   {"text":"Testing Twim on Nokia E63.",
+ *    "from_user":"mikeful",
+ *    "id":2619936198,
+ *    "created_at":"Mon, 13 Jul 2009 20:27:58 +0000"}],
+ *  "max_id":2619936198,
+ *  "query":"twim"}
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class JsonSearchResultsParser extends SearchResultsParser {
+
+    /** Field paths handled by the parser */
+    private static final int ERROR = 0;
+    private static final int RESULTS = 1;
+    private static final int ID = 2;
+    private static final int TEXT = 3;
+    private static final int FROM_USER = 4;
+    private static final int CREATED_AT = 5;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("error", ERROR);
+        SYMBOLS.addPath("results", RESULTS);
+        SYMBOLS.addPath("results/id", ID);
+        SYMBOLS.addPath("results/text", TEXT);
+        SYMBOLS.addPath("results/from_user", FROM_USER);
+        SYMBOLS.addPath("results/created_at", CREATED_AT);
+    }
+
+    private EntityDecoder entityDecoder = new EntityDecoder();
+
+    public JsonSearchResultsParser() {
+        super();
+    }
+
+    public void parse(CustomInputStream is) throws IOException {
+        try {
+            JsonParser json = new JsonParser(is, SYMBOLS);
+            String text = "";
+            User user = null;
+            long id = 0;
+            long createdAt = 0;
+            String error = "";
+            boolean entryStarted = false;
+            int event;
+            while ((event = json.next()) != JsonParser.END_DOCUMENT) {
+                Thread.yield();
+                switch (event) {
+                    case JsonParser.START_OBJECT:
+                        if (json.getDepth() == 3 && json.getPathId() == RESULTS) {
+                            entryStarted = true;
+                            text = "";
+                            user = null;
+                            id = 0;
+                            createdAt = 0;
+                        }
+                        break;
+                    case JsonParser.END_OBJECT:
+                        if (entryStarted && json.getDepth() == 2) {
+                            if (text.length() > 0) {
+                                addStatus(user, text, createdAt, id);
+                            }
+                            entryStarted = false;
+                        }
+                        break;
+                    case JsonParser.FIELD_NAME:
+                        switch (json.getPathId()) {
+                            case ERROR:
+                                error = json.nextText();
+                                break;
+                            case RESULTS:
+                                break;
+                            case ID:
+                                int idLength = json.readText();
+                                id = StatusFeedParser.parseId(json.getTextBuffer(), idLength);
+                                break;
+                            case TEXT:
+                                text = entityDecoder.decode(json.nextText());
+                                break;
+                            case FROM_USER:
+                                int nameLength = json.readText();
+                                user = userPool.intern(0, json.getTextBuffer(), nameLength);
+                                break;
+                            case CREATED_AT:
+                                int length = json.readText();
+                                createdAt = StatusFeedParser.parseTime(json.getTextBuffer(), length);
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (error.length() > 0) {
+                statuses.addElement(new Status("Twitter",
+                        "Error from Twitter: " + error));
+            }
+        } catch (Exception ex) {
+            throw new IOException("Error in JsonSearchResultsParser.parse(): " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * JsonStatusFeedParser.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.twitter;
+
+import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.EntityDecoder;
+import com.substanceofcode.utils.JsonParser;
+import com.substanceofcode.utils.Utf8;
+import com.substanceofcode.utils.XmlSymbolTable;
+import java.io.IOException;
+
+/**
+ * Parser for timelines and direct messages in JSON format. Statuses are
+ * collected the same way as in StatusFeedParser, only the field names
+ * are read from JSON objects. User details that come before the screen
+ * name are not used, they are filled in from a later status instead.
+ *
+ * [{"created_at":"Wed Aug 29 20:14:27 +0000 2007",
+ *   "id":235455042,
+ *   "text":"Heheh, I should just go to work for Gawker Media.",
+ *   "favorited":true,
+ *   "in_reply_to_status_id":null,
+ *   "user":{"id":13348,"screen_name":"Scobleizer","following":false}}]
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class JsonStatusFeedParser extends StatusFeedParser {
+
+    /** Field paths handled by the parser */
+    private static final int ERROR = 0;
+    private static final int ID = 1;
+    private static final int TEXT = 2;
+    private static final int IN_REPLY_TO_STATUS_ID = 3;
+    private static final int FAVORITED = 4;
+    private static final int SCREEN_NAME = 5;
+    private static final int CREATED_AT = 6;
+    private static final int FOLLOWING = 7;
+    private static final int USER = 8;
+    private static final int USER_ID = 9;
+    private static final int LOCATION = 10;
+    private static final int PROFILE_IMAGE_URL = 11;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("error", ERROR);
+        SYMBOLS.addPath("id", ID);
+        SYMBOLS.addPath("text", TEXT);
+        SYMBOLS.addPath("in_reply_to_status_id", IN_REPLY_TO_STATUS_ID);
+        SYMBOLS.addPath("favorited", FAVORITED);
+        SYMBOLS.addPath("created_at", CREATED_AT);
+        SYMBOLS.addPath("user", USER);
+        SYMBOLS.addPath("sender", USER);
+        SYMBOLS.addPath("user/screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("sender/screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("user/following", FOLLOWING);
+        SYMBOLS.addPath("sender/following", FOLLOWING);
+        SYMBOLS.addPath("user/id", USER_ID);
+        SYMBOLS.addPath("sender/id", USER_ID);
+        SYMBOLS.addPath("user/location", LOCATION);
+        SYMBOLS.addPath("sender/location", LOCATION);
+        SYMBOLS.addPath("user/profile_image_url", PROFILE_IMAGE_URL);
+        SYMBOLS.addPath("sender/profile_image_url", PROFILE_IMAGE_URL);
+        /** Shadow user fields that would otherwise match status fields */
+        SYMBOLS.addPath("user/created_at", XmlSymbolTable.UNKNOWN);
+        SYMBOLS.addPath("sender/created_at", XmlSymbolTable.UNKNOWN);
+    }
+
+    private EntityDecoder entityDecoder = new EntityDecoder();
+
+    /** Creates a new instance of JsonStatusFeedParser */
+    public JsonStatusFeedParser() {
+        super();
+    }
+
+    /**
+     * Parse statuses feed. The response is either an array of statuses,
+     * a single status or an error object.
+     * @param is
+     * @throws IOException
+     */
+    public void parse(CustomInputStream is) throws IOException {
+        try {
+            is.setRawCapture(rawCapture);
+            JsonParser json = new JsonParser(is, SYMBOLS);
+            byte[] text = null;
+            User user = null;
+            long userId = 0;
+            long id = 0;
+            long createdAt = 0;
+            boolean isFavorite = false;
+            boolean isFollowing = false;
+            long inReplyToId = 0;
+            boolean rootIsArray = false;
+            int statusDepth = 0;
+            int statusCount = 0;
+            int event;
+            while ((event = json.next()) != JsonParser.END_DOCUMENT) {
+                Thread.yield();
+                switch (event) {
+                    case JsonParser.START_ARRAY:
+                        if (json.getDepth() == 1) {
+                            rootIsArray = true;
+                        }
+                        break;
+                    case JsonParser.START_OBJECT:
+                        if (statusDepth == 0 && (json.getDepth() == 1
+                                || (rootIsArray && json.getDepth() == 2))) {
+                            statusDepth = json.getDepth();
+                            statusCount++;
+                            text = null;
+                            user = null;
+                            userId = 0;
+                            id = 0;
+                            createdAt = 0;
+                            isFavorite = false;
+                            isFollowing = false;
+                            inReplyToId = 0;
+                        }
+                        break;
+                    case JsonParser.END_OBJECT:
+                        if (statusDepth > 0 && json.getDepth() < statusDepth) {
+                            if (text != null) {
+                                addStatus(user, text, createdAt, id,
+                                        isFavorite, isFollowing, inReplyToId);
+                            }
+                            statusDepth = 0;
+                        }
+                        break;
+                    case JsonParser.END_ARRAY:
+                        if (json.getDepth() == 0 && statusCount == 0) {
+                            isReallyEmpty = true;
+                        }
+                        break;
+                    case JsonParser.FIELD_NAME:
+                        switch (json.getPathId()) {
+                            case ERROR:
+                                text = Utf8.encode("Error from Twitter: " + json.nextText());
+                                user = userPool.intern("Twitter");
+                                createdAt = 0;
+                                break;
+                            case ID:
+                                int idLength = json.readText();
+                                id = parseId(json.getTextBuffer(), idLength);
+                                break;
+                            case TEXT:
+                                String decoded = entityDecoder.decode(json.nextText());
+                                text = (decoded.length() > 0 ? Utf8.encode(decoded) : null);
+                                break;
+                            case IN_REPLY_TO_STATUS_ID:
+                                int replyLength = json.readText();
+                                inReplyToId = parseId(json.getTextBuffer(), replyLength);
+                                break;
+                            case FAVORITED:
+                                isFavorite = json.nextText().equals("true");
+                                break;
+                            case USER_ID:
+                                int userIdLength = json.readText();
+                                userId = parseId(json.getTextBuffer(), userIdLength);
+                                break;
+                            case SCREEN_NAME:
+                                int nameLength = json.readText();
+                                user = userPool.intern(userId, json.getTextBuffer(), nameLength);
+                                break;
+                            case LOCATION:
+                                /** Pooled users already have the details */
+                                if (user != null && user.getLocation() == null) {
+                                    user.setLocation(json.nextText());
+                                } else {
+                                    json.skipValue();
+                                }
+                                break;
+                            case PROFILE_IMAGE_URL:
+                                if (user != null && user.getProfileImageUrl() == null) {
+                                    user.setProfileImageUrl(json.nextText());
+                                } else {
+                                    json.skipValue();
+                                }
+                                break;
+                            case CREATED_AT:
+                                int length = json.readText();
+                                createdAt = parseTime(json.getTextBuffer(), length);
+                                break;
+                            case FOLLOWING:
+                                isFollowing = json.nextText().equals("true");
+                                break;
+                            case USER:
+                                break;
+                            default:
+                                /** Skip retweets, entities and other unused fields */
+                                json.skipValue();
+                                break;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            rawData = json.getRawData();
+        } catch (Exception ex) {
+            throw new IOException("Error in JsonStatusFeedParser.parse(): " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * JsonUsersParser.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.twitter;
+
+import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.EntityDecoder;
+import com.substanceofcode.utils.JsonParser;
+import com.substanceofcode.utils.Utf8;
+import com.substanceofcode.utils.XmlSymbolTable;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Parser for users in JSON format. The response is either an array of
+ * users or an object with the users in "users" array.
+ *
+ * [{"id":14550388,
+ *   "screen_name":"jeffsutherland",
+ *   "location":"Boston",
+ *   "status":{"created_at":"Sat Jan 10 16:20:13 +0000 2009",
+ *             "id":1109218902,
+ *             "text":"Study hard and win big!"}}]
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class JsonUsersParser extends UsersParser {
+
+    /** Field paths handled by the parser */
+    private static final int USERS = 0;
+    private static final int ID = 1;
+    private static final int SCREEN_NAME = 2;
+    private static final int LOCATION = 3;
+    private static final int STATUS = 4;
+    private static final int STATUS_ID = 5;
+    private static final int STATUS_TEXT = 6;
+    private static final int STATUS_CREATED_AT = 7;
+    private static final int PROFILE_IMAGE_URL = 8;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("users", USERS);
+        SYMBOLS.addPath("id", ID);
+        SYMBOLS.addPath("screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("location", LOCATION);
+        SYMBOLS.addPath("profile_image_url", PROFILE_IMAGE_URL);
+        SYMBOLS.addPath("status", STATUS);
+        SYMBOLS.addPath("status/id", STATUS_ID);
+        SYMBOLS.addPath("status/text", STATUS_TEXT);
+        SYMBOLS.addPath("status/created_at", STATUS_CREATED_AT);
+    }
+
+    private EntityDecoder entityDecoder = new EntityDecoder();
+
+    public void parse(CustomInputStream is) throws IOException {
+        String state = "";
+        try {
+            JsonParser json = new JsonParser(is, SYMBOLS);
+            users = new Vector();
+            long id = 0;
+            User user = null;
+            String location = null;
+            String profileImageUrl = null;
+            boolean hasStatus = false;
+            long statusId = 0;
+            byte[] statusText = null;
+            long statusCreatedAt = 0;
+            boolean rootIsArray = false;
+            int userDepth = 0;
+            int event;
+            state = "starting parsing ";
+            while ((event = json.next()) != JsonParser.END_DOCUMENT) {
+                Thread.yield();
+                switch(event) {
+                    case JsonParser.START_ARRAY:
+                        if(json.getDepth()==1) {
+                            rootIsArray = true;
+                        }
+                        break;
+                    case JsonParser.START_OBJECT:
+                        if(userDepth==0 && ((rootIsArray && json.getDepth()==2)
+                                || (json.getDepth()==3 && json.getPathId()==USERS))) {
+                            userDepth = json.getDepth();
+                            id = 0;
+                            user = null;
+                            location = null;
+                            profileImageUrl = null;
+                            hasStatus = false;
+                            statusId = 0;
+                            statusText = null;
+                            statusCreatedAt = 0;
+                        }
+                        break;
+                    case JsonParser.END_OBJECT:
+                        if(userDepth>0 && json.getDepth()<userDepth) {
+                            state = "creating new user instance";
+                            addUser(user, location, profileImageUrl, hasStatus,
+                                    statusId, statusText, statusCreatedAt);
+                            userDepth = 0;
+                        }
+                        break;
+                    case JsonParser.FIELD_NAME:
+                        switch(json.getPathId()) {
+                            case USERS:
+                                break;
+                            case ID:
+                                state = "getting id";
+                                int userIdLength = json.readText();
+                                id = StatusFeedParser.parseId(json.getTextBuffer(), userIdLength);
+                                break;
+                            case SCREEN_NAME:
+                                state = "getting screen_name";
+                                int nameLength = json.readText();
+                                user = userPool.intern(id, json.getTextBuffer(), nameLength);
+                                break;
+                            case LOCATION:
+                                state = "gettin location";
+                                location = json.nextText();
+                                break;
+                            case PROFILE_IMAGE_URL:
+                                profileImageUrl = json.nextText();
+                                break;
+                            case STATUS:
+                                state = "getting status";
+                                hasStatus = true;
+                                break;
+                            case STATUS_TEXT:
+                                int textLength = json.readText();
+                                textLength = entityDecoder.decode(json.getTextBuffer(), 0, textLength);
+                                statusText = Utf8.encode(json.getTextBuffer(), 0, textLength);
+                                break;
+                            case STATUS_ID:
+                                int idLength = json.readText();
+                                statusId = StatusFeedParser.parseId(json.getTextBuffer(), idLength);
+                                break;
+                            case STATUS_CREATED_AT:
+                                int length = json.readText();
+                                statusCreatedAt = StatusFeedParser.parseTime(json.getTextBuffer(), length);
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (Exception ex) {
+            throw new IOException("Err while " + state + " in JsonUsersParser.parse(): " + ex.getMessage());
+        }
+    }
+
+}
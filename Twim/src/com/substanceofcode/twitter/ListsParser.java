@@ -23,6 +23,7 @@ import com.substanceofcode.twitter.model.UserList;
 import com.substanceofcode.utils.CustomInputStream;
 import com.substanceofcode.utils.ResultParser;
 import com.substanceofcode.utils.XmlParser;
+import com.substanceofcode.utils.XmlSymbolTable;
 import java.io.IOException;
 import java.util.Vector;
 
@@ -32,6 +33,20 @@ import java.util.Vector;
  */
 public class ListsParser implements ResultParser {
 
+    /** Element paths handled by the parser */
+    private static final int LIST = 0;
+    private static final int NAME = 1;
+    private static final int URI = 2;
+    private static final int ID = 3;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("list", LIST);
+        SYMBOLS.addPath("list/name", NAME);
+        SYMBOLS.addPath("list/uri", URI);
+        SYMBOLS.addPath("list/id", ID);
+    }
+
     Vector userLists;
 
     public Vector getUserLists() {
@@ -56,61 +71,46 @@ public class ListsParser implements ResultParser {
      */
     public void parse(CustomInputStream is) throws IOException {
         try {
-            XmlParser xml = new XmlParser(is);
+            XmlParser xml = new XmlParser(is, SYMBOLS);
             userLists = new Vector();
-            System.out.println("Parsing list XML");
-            while (xml.parse() != XmlParser.END_DOCUMENT) {
-                String elementName = xml.getName();
-                if (elementName.equals("list")) {
-                    String listXml = xml.getInnerXml();
-                    System.out.println("list XML: " + listXml);
-                    UserList userList = parseList( listXml );
-                    if(userList!=null) {
-                        userLists.addElement( userList );
-                    }
-                }
-            }
-        } catch (IOException ex) {
-            throw new IOException("IOException in UserParser.parse(): " + ex.getMessage());
-        }
-    }
-
-    private UserList parseList(String listXml) throws IOException {
-        if(listXml==null) {
-            return null;
-        }
-        String state = "";
-        try {
-            //System.out.println("LISTXML: " + userXml);
-            XmlParser xml = new XmlParser(listXml);
             String name = "";
             String uri = "";
             String id = "";
-            state = "starting parsing ";
+            boolean listStarted = false;
             while (xml.parse() != XmlParser.END_DOCUMENT) {
                 Thread.yield();
-                String elementName = xml.getName();
-                if(elementName.equals("name")) {
-                    if(name.length()==0) {
+                switch(xml.getPathId()) {
+                    case LIST:
+                        if(listStarted) {
+                            userLists.addElement( new UserList(id, name, uri) );
+                        }
+                        listStarted = true;
+                        name = "";
+                        uri = "";
+                        id = "";
+                        break;
+                    case NAME:
                         name = xml.getText();
-                    }
-                } else if(elementName.equals("uri")) {
-                    if(uri.length()==0) {
+                        break;
+                    case URI:
                         uri = xml.getText();
-                    }
-                } else if(elementName.equals("id")) {
-                    if(id.length()==0) {
+                        break;
+                    case ID:
                         id = xml.getText();
-                    }
+                        break;
+                    default:
+                        /** Skip list owner and other unused fields */
+                        if(listStarted) {
+                            xml.skipElement();
+                        }
+                        break;
                 }
             }
-            state = "creating new list instance";
-            UserList list = new UserList(id, name, uri);
-            return list;
+            if(listStarted) {
+                userLists.addElement( new UserList(id, name, uri) );
+            }
         } catch (IOException ex) {
-            String sample = listXml;
-            throw new IOException("Err while " + state + " in ListsParser.parseList: " + ex.getMessage()
-                    + "\nXML: " + sample);
+            throw new IOException("IOException in ListsParser.parse(): " + ex.getMessage());
         }
     }
 
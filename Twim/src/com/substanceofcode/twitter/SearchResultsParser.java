@@ -20,14 +20,16 @@
 
 package com.substanceofcode.twitter;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.twitter.model.UserPool;
 import com.substanceofcode.utils.CustomInputStream;
-import com.substanceofcode.utils.DateTimeUtil;
 import com.substanceofcode.utils.Log;
 import com.substanceofcode.utils.ResultParser;
 import com.substanceofcode.utils.XmlParser;
+import com.substanceofcode.utils.XmlSymbolTable;
 import java.io.IOException;
-import java.util.Date;
 import java.util.Vector;
 
 /**
@@ -52,10 +54,35 @@ import java.util.Vector;
  */
 public class SearchResultsParser implements ResultParser {
 
+    /** Element paths handled by the parser */
+    private static final int ERROR = 0;
+    private static final int ENTRY = 1;
+    private static final int ID = 2;
+    private static final int TITLE = 3;
+    private static final int NAME = 4;
+    private static final int PUBLISHED = 5;
+    private static final int AUTHOR = 6;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("error", ERROR);
+        SYMBOLS.addPath("entry", ENTRY);
+        SYMBOLS.addPath("entry/id", ID);
+        SYMBOLS.addPath("entry/title", TITLE);
+        SYMBOLS.addPath("entry/author/name", NAME);
+        SYMBOLS.addPath("entry/published", PUBLISHED);
+        SYMBOLS.addPath("entry/author", AUTHOR);
+    }
+
     Vector statuses;
+    /** Authors of the results */
+    UserPool userPool;
+    /** Progress of the task that parses the results or null */
+    private TaskProgress progress = TaskProgress.getCurrent();
 
     public SearchResultsParser() {
         statuses = new Vector();
+        userPool = new UserPool();
     }
 
     public Vector getStatuses() {
@@ -71,64 +98,94 @@ public class SearchResultsParser implements ResultParser {
         }
 */
         try {
-            XmlParser xml = new XmlParser(is);
+            XmlParser xml = new XmlParser(is, SYMBOLS);
             String text = "";
-            String screenName = "";
-            String id = "";
-            Date date = null;
+            User user = null;
+            long id = 0;
+            long createdAt = 0;
             boolean entryStarted = false;
             Log.debug("Starting parsing");
             while (xml.parse() != XmlParser.END_DOCUMENT) {
-                String elementName = xml.getName();
                 Thread.yield();
-                //Log.debug("XML:" + elementName);
+                //Log.debug("XML:" + xml.getName());
 
-                if (elementName.equals("error")) {
-                    // Parse error message
-                    text = "Error from Twitter: " + xml.getText();
-                    screenName = "Twitter";
-                    date = new Date(System.currentTimeMillis());
-                } else if (elementName.equals("entry")) {
-                    // Parse normal status
-                    if (entryStarted && text.length() > 0) {
-                        Status status = new Status(screenName, text, date, id);
-                        statuses.addElement(status);
-                    }
-                    entryStarted = true;
-                    text = "";
-                    screenName = "";
-                    id = "";
-                    date = null;
-                
-                } else if (elementName.equals("id") && id.equals("")) {
-                    id = xml.getText();
-                    int idIndex = id.indexOf(":", 5);
-                    Log.debug("id: " + id + " index: " + idIndex);
-                    if(idIndex>0) {
-                        id = id.substring( idIndex+1 );
-                    }
-                } else if (elementName.equals("title")) {
-                    text += xml.getText();
-                } else if (elementName.equals("name")) {
-                    screenName = xml.getText();
-                    int space = screenName.indexOf(" ");
-                    screenName = screenName.substring(0,space);
-                } else if (elementName.equals("published")) {
-                    if(date==null) {
-                        String dateString = xml.getText();
-                        date = DateTimeUtil.getDateFromUniversalDateStamp(dateString);
-                    }
-                    //date = new Date(System.currentTimeMillis());
+                switch (xml.getPathId()) {
+                    case ERROR:
+                        // Parse error message
+                        text = "Error from Twitter: " + xml.getText();
+                        user = userPool.intern("Twitter");
+                        createdAt = 0;
+                        break;
+                    case ENTRY:
+                        // Parse normal status
+                        if (entryStarted && text.length() > 0) {
+                            addStatus(user, text, createdAt, id);
+                        }
+                        entryStarted = true;
+                        text = "";
+                        user = null;
+                        id = 0;
+                        createdAt = 0;
+                        break;
+                    case ID:
+                        if (id == 0) {
+                            /** Status id is after the last colon of the tag */
+                            int length = xml.readText();
+                            id = StatusFeedParser.parseId(xml.getTextBuffer(), length);
+                        }
+                        break;
+                    case TITLE:
+                        text += xml.getText();
+                        break;
+                    case NAME:
+                        /** Name is "screen_name (Real Name)" */
+                        int nameLength = xml.readText();
+                        char[] name = xml.getTextBuffer();
+                        int space = 0;
+                        while(space<nameLength && name[space]!=' ') {
+                            space++;
+                        }
+                        user = userPool.intern(0, name, space);
+                        break;
+                    case PUBLISHED:
+                        if(createdAt==0) {
+                            int length = xml.readText();
+                            createdAt = StatusFeedParser.parseTime(xml.getTextBuffer(), length);
+                        }
+                        break;
+                    case AUTHOR:
+                        break;
+                    default:
+                        if (entryStarted) {
+                            xml.skipElement();
+                        }
+                        break;
                 }
-
             }
             if (text.length() > 0 && entryStarted) {
-                Status status = new Status(screenName, text, date, id);
-                statuses.addElement(status);
+                addStatus(user, text, createdAt, id);
             }
         } catch (Exception ex) {
             throw new IOException("Error in SearchResultsParser.parse(): " + ex.getMessage());
         }
     }
 
+    void addStatus(User user, String text, long createdAt, long id) {
+        if(user==null) {
+            user = userPool.intern("");
+        }
+        statuses.addElement(new Status(user, text, createdAt, id));
+        if(progress!=null) {
+            progress.addItem();
+        }
+    }
+
+    /**
+     * Set pool of known users. Authors are resolved through the pool so
+     * that results of the same author share one User.
+     */
+    void setUserPool(UserPool userPool) {
+        this.userPool = userPool;
+    }
+
 }
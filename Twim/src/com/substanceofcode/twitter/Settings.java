@@ -51,6 +51,7 @@ public class Settings {
         public static final String THEME = "theme";
         public static final String TOKEN = "token";
         public static final String TOKEN_SECRET = "tokensecret";
+        public static final String JSON_FEEDS = "jsonfeeds";
 
 	/**
 	 * Singleton pattern is used to return 
@@ -18,15 +18,19 @@
  */
 package com.substanceofcode.twitter;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.twitter.model.StatusStore;
+import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.twitter.model.UserPool;
 import com.substanceofcode.utils.CustomInputStream;
+import com.substanceofcode.utils.DateParser;
 import com.substanceofcode.utils.ResultParser;
-import com.substanceofcode.utils.StringUtil;
+import com.substanceofcode.utils.Utf8;
 import com.substanceofcode.utils.XmlParser;
+import com.substanceofcode.utils.XmlSymbolTable;
 import java.io.IOException;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.Vector;
 
 /**
@@ -36,17 +40,72 @@ import java.util.Vector;
  */
 public class StatusFeedParser implements ResultParser {
 
-    private Vector statuses;
+    /** Element paths handled by the parser */
+    private static final int ERROR = 0;
+    private static final int NIL_CLASSES = 1;
+    private static final int STATUS = 2;
+    private static final int ID = 3;
+    private static final int TEXT = 4;
+    private static final int IN_REPLY_TO_STATUS_ID = 5;
+    private static final int FAVORITED = 6;
+    private static final int SCREEN_NAME = 7;
+    private static final int CREATED_AT = 8;
+    private static final int FOLLOWING = 9;
+    private static final int HTML = 10;
+    private static final int USER = 11;
+    private static final int USER_ID = 12;
+    private static final int LOCATION = 13;
+    private static final int PROFILE_IMAGE_URL = 14;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("error", ERROR);
+        SYMBOLS.addPath("nilclasses", NIL_CLASSES);
+        SYMBOLS.addPath("status", STATUS);
+        SYMBOLS.addPath("direct_message", STATUS);
+        SYMBOLS.addPath("status/id", ID);
+        SYMBOLS.addPath("direct_message/id", ID);
+        SYMBOLS.addPath("status/text", TEXT);
+        SYMBOLS.addPath("direct_message/text", TEXT);
+        SYMBOLS.addPath("status/in_reply_to_status_id", IN_REPLY_TO_STATUS_ID);
+        SYMBOLS.addPath("status/favorited", FAVORITED);
+        SYMBOLS.addPath("status/user/screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("direct_message/sender/screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("status/created_at", CREATED_AT);
+        SYMBOLS.addPath("direct_message/created_at", CREATED_AT);
+        SYMBOLS.addPath("status/user/following", FOLLOWING);
+        SYMBOLS.addPath("direct_message/sender/following", FOLLOWING);
+        SYMBOLS.addPath("html", HTML);
+        SYMBOLS.addPath("status/user", USER);
+        SYMBOLS.addPath("direct_message/sender", USER);
+        SYMBOLS.addPath("status/user/id", USER_ID);
+        SYMBOLS.addPath("direct_message/sender/id", USER_ID);
+        SYMBOLS.addPath("status/user/location", LOCATION);
+        SYMBOLS.addPath("direct_message/sender/location", LOCATION);
+        SYMBOLS.addPath("status/user/profile_image_url", PROFILE_IMAGE_URL);
+        SYMBOLS.addPath("direct_message/sender/profile_image_url", PROFILE_IMAGE_URL);
+    }
+
+    Vector statuses;
+    /** Authors of the statuses */
+    UserPool userPool;
     private boolean isDirect;
-    private String rawData;
-    private boolean isReallyEmpty;
+    private StatusStore store;
+    String rawData;
+    boolean isReallyEmpty;
+    boolean rawCapture;
+    private StatusListener listener;
+    /** Progress of the task that parses the feed or null */
+    private TaskProgress progress = TaskProgress.getCurrent();
 
     /** Creates a new instance of StatusFeedParser */
     public StatusFeedParser() {
         statuses = new Vector();
+        userPool = new UserPool();
         isDirect = false;
         rawData = "";
         isReallyEmpty = false;
+        rawCapture = false;
     }
 
     public String getRawData() {
@@ -102,113 +161,112 @@ public class StatusFeedParser implements ResultParser {
          * <nilclasses type="array"></nilclasses>
          */
         try {
-            XmlParser xml = new XmlParser(is);
-            String text = "";
-            String screenName = "";
-            String id = "";
-            Date date = null;
-            boolean doSender = false;
-            boolean doRecipient = false;
+            is.setRawCapture(rawCapture);
+            XmlParser xml = new XmlParser(is, SYMBOLS);
+            byte[] text = null;
+            User user = null;
+            long userId = 0;
+            long id = 0;
+            long createdAt = 0;
             boolean isFavorite = false;
             boolean isFollowing = false;
-            String inReplyToId = "";
+            long inReplyToId = 0;
+            boolean statusStarted = false;
             while (xml.parse() != XmlParser.END_DOCUMENT) {
-                String elementName = xml.getName();
                 Thread.yield();
-                if (elementName.equals("error")) {
-                    // Parse error message
-                    text = "Error from Twitter: " + xml.getText();
-                    screenName = "Twitter";
-                    date = new Date(System.currentTimeMillis());
-                } else if(elementName.equals("nilclasses")) {
-                    isReallyEmpty = true;
-                    return;
-                } else if (elementName.equals("status")) {
-                    // Parse normal status
-                    if (text.length() > 0) {
-                        Status status = new Status(screenName, text, date, id);
-                        status.setDirect(isDirect);
-                        status.setInReplyToId(inReplyToId);
-                        status.setFollowing(isFollowing);
-                        status.setFavorite(isFavorite);
-                        statuses.addElement(status);
-                    }
-                    text = "";
-                    screenName = "";
-                    id = "";
-                    date = null;
-                    doSender = false;
-                    doRecipient = false;
-                    isFavorite = false;
-                    isFollowing = false;
-                    inReplyToId = "";
-
-                } else if (elementName.equals("direct_message")) {
-                    if (text.length() > 0) {
-                        Status status = new Status(screenName, text, date, id);
-                        status.setDirect(isDirect);
-                        status.setFavorite(isFavorite);
-                        status.setFollowing(isFollowing);
-                        status.setInReplyToId(inReplyToId);
-                        statuses.addElement(status);
-                    }
-                    text = "";
-                    screenName = "";
-                    id = "";
-                    date = null;
-                    doSender = false;
-                    doRecipient = false;
-                    isFavorite = false;
-                    isFollowing = false;
-                    inReplyToId = "";
-                } else if (elementName.equals("id") && id.equals("")) {
-                    id = xml.getText();
-                } else if (elementName.equals("text")) {
-                    if(text.length()==0) {
-                        text += xml.getText();
-                    }
-                } else if (elementName.equals("in_reply_to_status_id")) {
-                    inReplyToId = xml.getText();
-                } else if (elementName.equals("favorited")) {
-                    String favorited = xml.getText();
-                    if(favorited.startsWith("true")) {
-                        isFavorite = true;
-                    }
-                } else if (elementName.equals("screen_name")) {
-                    if (doSender || (!doSender && !doRecipient)) {
-                        screenName = xml.getText();
-                    }
-                } else if (elementName.equals("sender")) {
-                    doSender = true;
-                    doRecipient = false;
-                } else if (elementName.equals("recipient")) {
-                    doSender = false;
-                    doRecipient = true;
-                } else if (elementName.equals("created_at")) {
-                    if(date==null) {
-                        String dateString = xml.getText();
-                        date = parseDate(dateString);
-                    }
-                } else if (elementName.equals("following")) {
-                    String val = xml.getText();
-                    System.out.println("Following " + val);
-
-                    if(val.startsWith("false")) {
+                switch (xml.getPathId()) {
+                    case ERROR:
+                        // Parse error message
+                        text = Utf8.encode("Error from Twitter: " + xml.getText());
+                        user = userPool.intern("Twitter");
+                        createdAt = 0;
+                        break;
+                    case NIL_CLASSES:
+                        isReallyEmpty = true;
+                        return;
+                    case STATUS:
+                        // Parse normal status or direct message
+                        if (text != null) {
+                            addStatus(user, text, createdAt, id,
+                                    isFavorite, isFollowing, inReplyToId);
+                        }
+                        text = null;
+                        user = null;
+                        userId = 0;
+                        id = 0;
+                        createdAt = 0;
+                        isFavorite = false;
                         isFollowing = false;
-                    } else {
-                        isFollowing = true;
-                    }
-                } else if (elementName.equals("html")) {
-                    return;
+                        inReplyToId = 0;
+                        statusStarted = true;
+                        break;
+                    case ID:
+                        if (id == 0) {
+                            int length = xml.readText();
+                            id = parseId(xml.getTextBuffer(), length);
+                        }
+                        break;
+                    case TEXT:
+                        if (text == null) {
+                            int length = xml.readText();
+                            if (length > 0) {
+                                text = Utf8.encode(xml.getTextBuffer(), 0, length);
+                            }
+                        }
+                        break;
+                    case IN_REPLY_TO_STATUS_ID:
+                        int replyLength = xml.readText();
+                        inReplyToId = parseId(xml.getTextBuffer(), replyLength);
+                        break;
+                    case FAVORITED:
+                        isFavorite = xml.getText().startsWith("true");
+                        break;
+                    case USER_ID:
+                        int userIdLength = xml.readText();
+                        userId = parseId(xml.getTextBuffer(), userIdLength);
+                        break;
+                    case SCREEN_NAME:
+                        int nameLength = xml.readText();
+                        user = userPool.intern(userId, xml.getTextBuffer(), nameLength);
+                        break;
+                    case LOCATION:
+                        /** Pooled users already have the details */
+                        if (user != null && user.getLocation() == null) {
+                            user.setLocation(xml.getText());
+                        } else {
+                            xml.skipElement();
+                        }
+                        break;
+                    case PROFILE_IMAGE_URL:
+                        if (user != null && user.getProfileImageUrl() == null) {
+                            user.setProfileImageUrl(xml.getText());
+                        } else {
+                            xml.skipElement();
+                        }
+                        break;
+                    case CREATED_AT:
+                        if (createdAt == 0) {
+                            int length = xml.readText();
+                            createdAt = parseTime(xml.getTextBuffer(), length);
+                        }
+                        break;
+                    case FOLLOWING:
+                        isFollowing = !xml.getText().startsWith("false");
+                        break;
+                    case HTML:
+                        return;
+                    case USER:
+                        break;
+                    default:
+                        if (statusStarted) {
+                            xml.skipElement();
+                        }
+                        break;
                 }
             }
-            if (text.length() > 0) {
-                Status status = new Status(screenName, text, date, id);
-                status.setDirect(isDirect);
-                status.setFavorite(isFavorite);
-                status.setFollowing(isFollowing);
-                status.setInReplyToId(inReplyToId);
-                statuses.addElement(status);
+            if (text != null) {
+                addStatus(user, text, createdAt, id,
+                        isFavorite, isFollowing, inReplyToId);
             }
             rawData = xml.getRawData();
         } catch (Exception ex) {
@@ -216,111 +274,107 @@ public class StatusFeedParser implements ResultParser {
         }
     }
 
-    /**
-     * Parse RSS date format to Date object.
-     * Example of RSS date:
-     * Sat, 23 Sep 2006 22:25:11 +0000
-     */
-    public static Date parseDate(String dateString) throws Exception {
-        Date pubDate = null;
-        try {
-            // Split date string to values
-            // 0 = week day
-            // 1 = day of month
-            // 2 = month
-            // 3 = year (could be with either 4 or 2 digits)
-            // 4 = time
-            // 5 = GMT
-            int weekDayIndex = 0;
-            int dayOfMonthIndex = 2;
-            int monthIndex = 1;
-            int yearIndex = 5;
-            int timeIndex = 3;
-            int gmtIndex = 4;
-
-            
-
-            String[] values = StringUtil.split(dateString, " ");
-            int columnCount = values.length;
-            // Wed Aug 29 20:14:27 +0000 2007
-
-            if (columnCount == 5) {
-                // Expected format:
-                // 09 Nov 2006 23:18:49 EST
-                dayOfMonthIndex = 0;
-                monthIndex = 1;
-                yearIndex = 2;
-                timeIndex = 3;
-                gmtIndex = 4;
-            } else if (columnCount == 7) {
-                // Expected format:
-                // Thu, 19 Jul  2007 00:00:00 N
-                yearIndex = 4;
-                timeIndex = 5;
-                gmtIndex = 6;
-            } else if (columnCount < 5 || columnCount > 6) {
-                throw new Exception("Invalid date format: " + dateString);
+    void addStatus(User user, byte[] text, long createdAt, long id,
+            boolean isFavorite, boolean isFollowing, long inReplyToId) {
+        boolean isStored = (store != null && !isDirect && id != 0);
+        Status status = (isStored ? store.get(id) : null);
+        if (status == null) {
+            if (user == null) {
+                user = userPool.intern("");
             }
-
-            // Day of month
-            int dayOfMonth = Integer.parseInt(values[dayOfMonthIndex]);
-
-            // Month
-            String[] months = {
-                "Jan", "Feb", "Mar", "Apr", "May", "Jun",
-                "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
-            String monthString = values[monthIndex];
-            int month = 0;
-            for (int monthEnumIndex = 0; monthEnumIndex < 12; monthEnumIndex++) {
-                if (monthString.equals(months[monthEnumIndex])) {
-                    month = monthEnumIndex;
-                }
+            status = new Status(user, text, createdAt, id);
+            status.setDirect(isDirect);
+            status.setInReplyToId(inReplyToId);
+            if (isStored) {
+                store.put(status);
             }
+        }
+        status.setFavorite(isFavorite);
+        status.setFollowing(isFollowing);
+        statuses.addElement(status);
+        if (progress != null) {
+            progress.addItem();
+        }
+        if (listener != null) {
+            listener.statusReceived(status);
+        }
+    }
 
-            // Year
-            int year = Integer.parseInt(values[yearIndex]);
-            if (year < 100) {
-                year += 2000;
-            }
+    /**
+     * Parse date to Date object. Supported formats are listed in
+     * DateParser, eg. Sat, 23 Sep 2006 22:25:11 +0000
+     */
+    public static Date parseDate(String dateString) throws Exception {
+        long time = DateParser.parse(dateString);
+        if (time == DateParser.INVALID) {
+            throw new Exception("Invalid date format: " + dateString);
+        }
+        return new Date(time);
+    }
 
-            // Time
-            String[] timeValues = StringUtil.split(values[timeIndex], ":");
-            int hours = Integer.parseInt(timeValues[0]);
-            int minutes = Integer.parseInt(timeValues[1]);
-            int seconds = Integer.parseInt(timeValues[2]);
+    /**
+     * Parse date from parser text buffer without creating a string.
+     * @return Seconds since epoch.
+     */
+    static long parseTime(char[] chars, int length) throws IOException {
+        long time = DateParser.parse(chars, 0, length);
+        if (time == DateParser.INVALID) {
+            throw new IOException("Invalid date format: " + new String(chars, 0, length));
+        }
+        return time / 1000L;
+    }
 
-            pubDate = getCal(dayOfMonth, month, year, hours, minutes, seconds);
+    /**
+     * Parse id from parser text buffer. Only the trailing digits are used
+     * so that Atom ids like tag:search.twitter.com,2005:123 work too.
+     * @return Id or 0 if there is no id.
+     */
+    static long parseId(char[] chars, int length) {
+        int start = length;
+        while (start > 0 && chars[start - 1] <= ' ') {
+            start--;
+        }
+        int end = start;
+        while (start > 0 && chars[start - 1] >= '0' && chars[start - 1] <= '9') {
+            start--;
+        }
+        long id = 0;
+        for (int index = start; index < end; index++) {
+            id = id * 10 + (chars[index] - '0');
+        }
+        return id;
+    }
 
-//System.out.println("OrigDate: " + dateString);
-//System.out.println("ParsDate: " + pubDate.toString());
+    void setDirect(boolean value) {
+        this.isDirect = value;
+    }
 
-        } catch (Exception ex) {
-            // TODO: Add exception handling code
-            throw new Exception("Error in parseDate: " + ex.getMessage());
-        } catch (Throwable t) {
-            // TODO: Add exception handling code
-            throw new Exception("Throwable in parseDate: " + t.getMessage());
-        }
-        return pubDate;
+    /**
+     * Set store of known statuses. Statuses that are already in the store
+     * are reused and new ones are added to it.
+     */
+    void setStatusStore(StatusStore store) {
+        this.store = store;
     }
 
-    /** Get calendar date. **/
-    public static Date getCal(int dayOfMonth, int month, int year, int hours,
-            int minutes, int seconds) throws Exception {
-        // Create calendar object from date values
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeZone(TimeZone.getTimeZone("GMT+0"));
-        cal.set(Calendar.DAY_OF_MONTH, dayOfMonth);
-        cal.set(Calendar.MONTH, month);
-        cal.set(Calendar.YEAR, year);
-        cal.set(Calendar.HOUR_OF_DAY, hours);
-        cal.set(Calendar.MINUTE, minutes);
-        cal.set(Calendar.SECOND, seconds);
+    /**
+     * Set pool of known users. Authors are resolved through the pool so
+     * that statuses of the same author share one User.
+     */
+    void setUserPool(UserPool userPool) {
+        this.userPool = userPool;
+    }
 
-        return cal.getTime();
+    /**
+     * Set listener that receives each status as soon as it has been
+     * parsed, before the rest of the response has been downloaded.
+     */
+    void setStatusListener(StatusListener listener) {
+        this.listener = listener;
     }
 
-    void setDirect(boolean value) {
-        this.isDirect = value;
+    /** Keep raw response for getRawData(), used for diagnostics only */
+    void setRawCapture(boolean value) {
+        this.rawCapture = value;
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * StatusListener.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.twitter;
+
+import com.substanceofcode.twitter.model.Status;
+
+/**
+ * Listener for statuses parsed from a timeline feed while the response
+ * is still being downloaded.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public interface StatusListener {
+
+    /**
+     * Called from the parsing thread when a status has been parsed.
+     * @param status Parsed status.
+     */
+    public void statusReceived(Status status);
+
+}
@@ -20,11 +20,13 @@
 package com.substanceofcode.twitter;
 
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.twitter.model.StatusStore;
+import com.substanceofcode.twitter.model.UserPool;
 import com.substanceofcode.utils.HttpUtil;
 import com.substanceofcode.utils.Log;
 import com.substanceofcode.utils.StringUtil;
 import java.io.IOException;
-import java.util.Calendar;
+import java.util.Enumeration;
 import java.util.Vector;
 
 /**
@@ -37,6 +39,9 @@ public class TwitterApi {
     private String username;
     private String password;
 
+    /** Number of statuses in a full page, the default of the API */
+    public static final int PAGE_SIZE = 20;
+
     private static final String PUBLIC_TIMELINE_URL = "http://www.twitter.com/statuses/public_timeline.xml";
     private static final String HOME_TIMELINE_URL = "http://api.twitter.com/1/statuses/home_timeline.xml"; // Old: "http://www.twitter.com/statuses/friends_timeline.xml";
     private static final String USER_TIMELINE_URL = "http://api.twitter.com/1/statuses/user_timeline.xml";
@@ -49,7 +54,8 @@ public class TwitterApi {
     private static final String FAVORITE_DESTROY_URL = "http://api.twitter.com/1/favorites/destroy/";
     private static final String FRIENDSHIPS_CREATE_URL = "http://api.twitter.com/1/friendships/create/";
     private static final String FRIENDSHIPS_DESTROY_URL = "http://api.twitter.com/1/friendships/destroy/";
-    private static final String SEARCH_URL = "http://search.twitter.com/search.atom?rpp=20&q=";
+    private static final String SEARCH_URL = "http://search.twitter.com/search.atom?rpp=" + PAGE_SIZE + "&q=";
+    private static final String SEARCH_JSON_URL = "http://search.twitter.com/search.json?rpp=" + PAGE_SIZE + "&q=";
     private static final String RETWEETS_OF_ME_URL = "http://api.twitter.com/1/statuses/retweets_of_me.xml";
     private static final String LISTS_URL = "http://api.twitter.com/1/@USERNAME@/lists.xml";
     private static final String LIST_STATUSES_URL = "http://api.twitter.com/1/@USERNAME@/lists/@LIST@/statuses.xml";
@@ -59,6 +65,26 @@ public class TwitterApi {
     private static final String OAUTH_ACCESS_TOKEN_URL = "https://api.twitter.com/oauth/access_token";
     private static final String OAUTH_AUTHORIZE_URL = "https://api.twitter.com/oauth/authorize";
 
+    /** Feeds that can be requested either in XML or JSON format */
+    public static final int FEED_HOME = 0;
+    public static final int FEED_RESPONSES = 1;
+    public static final int FEED_USER = 2;
+    public static final int FEED_PUBLIC = 3;
+    public static final int FEED_DIRECT = 4;
+    public static final int FEED_FAVOURITE = 5;
+    public static final int FEED_RETWEETS_OF_ME = 6;
+    public static final int FEED_LIST_STATUSES = 7;
+    public static final int FEED_SEARCH = 8;
+    public static final int FEED_LISTS = 9;
+
+    /** Feeds requested in JSON format, XML is used by default */
+    private boolean[] jsonFeeds = new boolean[10];
+
+    /** Statuses shared by all timelines */
+    private StatusStore statusStore = new StatusStore();
+    /** Authors of the statuses */
+    private UserPool userPool = new UserPool();
+
     private static boolean isAuthenticated = false;
     private static Status authErrStatus = null;
     private static XAuth xauth;
@@ -67,6 +93,41 @@ public class TwitterApi {
     public TwitterApi() {
     }
 
+    /** Get store of the statuses in timelines */
+    public StatusStore getStatusStore() {
+        return statusStore;
+    }
+
+    /** Get pool of the authors of statuses in timelines */
+    public UserPool getUserPool() {
+        return userPool;
+    }
+
+    /**
+     * Select response format of a feed. JSON responses are smaller than
+     * XML responses and are parsed with the Json*Parser classes.
+     * @param feed      Feed (eg. FEED_HOME).
+     * @param useJson   true to request JSON, false for XML.
+     */
+    public void setJsonFormat(int feed, boolean useJson) {
+        jsonFeeds[feed] = useJson;
+    }
+
+    /** Select response format of all feeds */
+    public void setJsonFormat(boolean useJson) {
+        for(int feed=0; feed<jsonFeeds.length; feed++) {
+            jsonFeeds[feed] = useJson;
+        }
+    }
+
+    /** Get feed URL in the format selected for the feed */
+    private String getFeedUrl(String xmlUrl, int feed) {
+        if(jsonFeeds[feed]) {
+            return StringUtil.replace(xmlUrl, ".xml", ".json");
+        }
+        return xmlUrl;
+    }
+
     public void bypassAuthorization(String token, String tokenSecret) {
         if(token!=null && token.length()>0) {
             xauth = new XAuth(username, password);
@@ -97,12 +158,12 @@ public class TwitterApi {
                 return true;
             } else {
                 // Failure
-                authErrStatus = new Status("Twitter", "Couldn't find OAuth token from response: " + token, null, "");
+                authErrStatus = new Status("Twitter", "Couldn't find OAuth token from response: " + token);
                 isAuthenticated = false;
                 return false;
             }
         } catch (Exception ex) {
-            authErrStatus = new Status("Twitter", "Couldn't authenticate. Exception: " + ex.getMessage(), null, "");
+            authErrStatus = new Status("Twitter", "Couldn't authenticate. Exception: " + ex.getMessage());
             isAuthenticated = false;
             return false;
         }
@@ -134,6 +195,8 @@ public class TwitterApi {
     public Status markAsFavorite(Status status) {
         try {
             StatusFeedParser parser = new StatusFeedParser();
+            parser.setStatusStore(statusStore);
+            parser.setUserPool(userPool);
             String url = FAVORITE_CREATE_URL + status.getId() + ".xml";
             xauth.xAuthWebRequest(true, url, null, parser);
             //HttpUtil.doPost( url, parser );
@@ -144,9 +207,7 @@ public class TwitterApi {
         } catch(Exception ex) {
             return new Status(
                     "Twim",
-                    "Error while marking status as favorite: " + ex.getMessage(),
-                    Calendar.getInstance().getTime(),
-                    "0");
+                    "Error while marking status as favorite: " + ex.getMessage());
         }
         return null;
     }
@@ -163,60 +224,80 @@ public class TwitterApi {
      * Request direct messages from Twitter API
      * @return Vector containing direct messages.
      */
-    public Vector requestDirectTimeline() {
-        return requestTimeline( DIRECT_TIMELINE_URL );
+    public Vector requestDirectTimeline(StatusListener listener) {
+        return requestTimeline( DIRECT_TIMELINE_URL, FEED_DIRECT, listener );
     }
 
     /**
      * Request favorite tweets from Twitter API.
      * @return Vector containing favorite tweets.
      */
-    public Vector requestFavouriteTimeline() {
-        return requestTimeline(FAVORITE_TIMELINE_URL);
+    public Vector requestFavouriteTimeline(StatusListener listener) {
+        return requestTimeline(FAVORITE_TIMELINE_URL, FEED_FAVOURITE, listener);
     }
 
     /**
      * Request home (following) timeline from Twitter API.
      * @return Vector containing StatusEntry items.
      */
-    public Vector requestHomeTimeline(int page) {
+    public Vector requestHomeTimeline(int page, StatusListener listener) {
         String url = HOME_TIMELINE_URL;
         if(page>1) {
             url += "?page=" + page;
         }
-        return requestTimeline( url );
+        return requestTimeline( url, FEED_HOME, listener );
     }    
+
+    /**
+     * Request home timeline statuses newer than the given status.
+     * @param sinceId   Id of the newest status already shown.
+     * @return Vector containing only new StatusEntry items, newest first.
+     */
+    public Vector requestHomeTimelineSince(long sinceId) {
+        Vector entries = requestTimeline(
+                HOME_TIMELINE_URL + "?since_id=" + sinceId, FEED_HOME, null);
+        /** Drop "No Tweets found" and error placeholders */
+        Vector newEntries = new Vector();
+        Enumeration en = entries.elements();
+        while(en.hasMoreElements()) {
+            Status status = (Status)en.nextElement();
+            if(status.getId()>sinceId) {
+                newEntries.addElement(status);
+            }
+        }
+        return newEntries;
+    }
     
     /**
      * Request public timeline from Twitter API.
      * @return Vector containing StatusEntry items.
      */
-    public Vector requestUserTimeline() {
-        return requestTimeline(USER_TIMELINE_URL);
+    public Vector requestUserTimeline(StatusListener listener) {
+        return requestTimeline(USER_TIMELINE_URL, FEED_USER, listener);
     }
 
     /**
      * Request public timeline from Twitter API.
      * @return Vector containing StatusEntry items.
      */
-    public Vector requestPublicTimeline() {
-        return requestTimeline(PUBLIC_TIMELINE_URL);
+    public Vector requestPublicTimeline(StatusListener listener) {
+        return requestTimeline(PUBLIC_TIMELINE_URL, FEED_PUBLIC, listener);
     }
 
-    public Vector requestRetweetsOfMe(int page) {
+    public Vector requestRetweetsOfMe(int page, StatusListener listener) {
         String url = RETWEETS_OF_ME_URL;
         if(page>1) {
             url += "?page=" + page;
         }
-        return requestTimeline( url );
+        return requestTimeline( url, FEED_RETWEETS_OF_ME, listener );
     }
 
     /**
      * Request responses timeline from Twitter API.{
      * @return Vector containing StatusEntry items.
      */
-    public Vector requestResponsesTimeline() {
-        return requestTimeline(RESPONSES_TIMELINE_URL);
+    public Vector requestResponsesTimeline(StatusListener listener) {
+        return requestTimeline(RESPONSES_TIMELINE_URL, FEED_RESPONSES, listener);
     }
     
     public Status updateStatus(String status) {
@@ -228,6 +309,8 @@ public class TwitterApi {
             }
 
             StatusFeedParser parser = new StatusFeedParser();
+            parser.setStatusStore(statusStore);
+            parser.setUserPool(userPool);
             String url = STATUS_UPDATE_URL;
             QueryParameter[] params = new QueryParameter[] {
                 new QueryParameter("status", status),
@@ -244,9 +327,7 @@ public class TwitterApi {
         } catch(Exception ex) {
             return new Status(
                     "Twim",
-                    "Error while updating status: " + ex.getMessage(),
-                    Calendar.getInstance().getTime(),
-                    "0");
+                    "Error while updating status: " + ex.getMessage());
         }
         return null;
     }
@@ -261,6 +342,8 @@ public class TwitterApi {
         try {
             HttpUtil.setBasicAuthentication("", "");
             StatusFeedParser parser = new StatusFeedParser();
+            parser.setStatusStore(statusStore);
+            parser.setUserPool(userPool);
             xauth.xAuthWebRequest(false, FRIENDS_URL, null, parser);
             //HttpUtil.doGet(FRIENDS_URL, parser);
             entries = parser.getStatuses();
@@ -282,7 +365,14 @@ public class TwitterApi {
         return password;
     }
     
-    private Vector requestTimeline(String timelineUrl) {
+    /**
+     * Request timeline feed.
+     * @param timelineUrl   Feed URL.
+     * @param feed          Feed for selecting the response format.
+     * @param listener      Listener for statuses as they are parsed or null.
+     * @return Vector containing StatusEntry items.
+     */
+    private Vector requestTimeline(String timelineUrl, int feed, StatusListener listener) {
         Vector entries = new Vector();
         if(authorize()==false) {
             if(authErrStatus!=null) {
@@ -290,15 +380,26 @@ public class TwitterApi {
                 return entries;
             }
         }
+        timelineUrl = getFeedUrl(timelineUrl, feed);
         try {
             boolean retry = false;
             do {
                 //HttpUtil.setBasicAuthentication(username, password);
                 HttpUtil.setBasicAuthentication("", "");
-                StatusFeedParser parser = new StatusFeedParser();
-                if(timelineUrl.equals(DIRECT_TIMELINE_URL)) {
+                StatusFeedParser parser;
+                if(jsonFeeds[feed]) {
+                    parser = new JsonStatusFeedParser();
+                } else {
+                    parser = new StatusFeedParser();
+                }
+                if(feed==FEED_DIRECT) {
                     parser.setDirect(true);
                 }
+                /** Capture raw response only when retrying for diagnostics */
+                parser.setRawCapture(retry);
+                parser.setStatusStore(statusStore);
+                parser.setUserPool(userPool);
+                parser.setStatusListener(listener);
                 xauth.xAuthWebRequest(false, timelineUrl, null, parser);
                 //HttpUtil.doGet(timelineUrl, parser);
                 int lastResponseCode = HttpUtil.getLastResponseCode();
@@ -308,13 +409,11 @@ public class TwitterApi {
                         new Status("Twitter", "No statuses. API response from " +
                         timelineUrl + " (" + lastResponseCode + "): " +
                         HttpUtil.getHeaders() + " " +
-                        parser.getRawData(),
-                        Calendar.getInstance().getTime(), ""));
+                        parser.getRawData()));
                     retry = !retry;
                 } else if(entries.isEmpty() && parser.isReallyEmpty()==true) {
                     entries.addElement(
-                        new Status("Twitter", "No Tweets found.",
-                        Calendar.getInstance().getTime(), ""));
+                        new Status("Twitter", "No Tweets found."));
                 } else {
                     retry = false;
                 }
@@ -322,18 +421,15 @@ public class TwitterApi {
         } catch (IOException ex) {
             entries.addElement(
                     new Status("Twitter", "Error occured. Please check " +
-                    "your connection or username and password.",
-                    Calendar.getInstance().getTime(), ""));
+                    "your connection or username and password."));
 
             entries.addElement(
-                    new Status("Twitter", "StackTrace: " + ex.toString(),
-                    Calendar.getInstance().getTime(), ""));
+                    new Status("Twitter", "StackTrace: " + ex.toString()));
 
             ex.printStackTrace();
         } catch (Exception ex) {
             entries.addElement(
-                    new Status("Twitter", "API exception: " + ex.toString(),
-                    Calendar.getInstance().getTime(), ""));
+                    new Status("Twitter", "API exception: " + ex.toString()));
         }
         return entries;
     }
@@ -341,6 +437,8 @@ public class TwitterApi {
     public Status markAsUnfavorite(Status status) {
         try {
             StatusFeedParser parser = new StatusFeedParser();
+            parser.setStatusStore(statusStore);
+            parser.setUserPool(userPool);
             String url = FAVORITE_DESTROY_URL + status.getId() + ".xml";
             xauth.xAuthWebRequest(true, url, null, parser);
             //HttpUtil.doPost( url, parser );
@@ -351,17 +449,24 @@ public class TwitterApi {
         } catch(Exception ex) {
             return new Status(
                     "Twim",
-                    "Error while marking status as unfavorite: " + ex.getMessage(),
-                    Calendar.getInstance().getTime(),
-                    "0");
+                    "Error while marking status as unfavorite: " + ex.getMessage());
         }
         return null;
     }
 
     public Vector search(String query, int page) throws Exception {
         try {
-            SearchResultsParser parser = new SearchResultsParser();
-            String url = SEARCH_URL + StringUtil.urlEncode(query) + "&page=" + page;
+            SearchResultsParser parser;
+            String url;
+            if(jsonFeeds[FEED_SEARCH]) {
+                parser = new JsonSearchResultsParser();
+                url = SEARCH_JSON_URL;
+            } else {
+                parser = new SearchResultsParser();
+                url = SEARCH_URL;
+            }
+            parser.setUserPool(userPool);
+            url += StringUtil.urlEncode(query) + "&page=" + page;
             Log.debug("URL: " + url);
             HttpUtil.doPost( url, parser );
             Vector statuses = parser.getStatuses();
@@ -376,8 +481,14 @@ public class TwitterApi {
 
         Vector entries = new Vector();
         try {
-            ListsParser parser = new ListsParser();
-            String url = StringUtil.replace(LISTS_URL, "@USERNAME@", username);
+            ListsParser parser;
+            if(jsonFeeds[FEED_LISTS]) {
+                parser = new JsonListsParser();
+            } else {
+                parser = new ListsParser();
+            }
+            String url = getFeedUrl(LISTS_URL, FEED_LISTS);
+            url = StringUtil.replace(url, "@USERNAME@", username);
             xauth.xAuthWebRequest(false, url, null, parser);
             //HttpUtil.doGet(url, parser);
             entries = parser.getUserLists();
@@ -391,11 +502,11 @@ public class TwitterApi {
         return entries;
     }
 
-    public Vector requestListStatuses(String listName) {
+    public Vector requestListStatuses(String listName, StatusListener listener) {
         String url = StringUtil.replace(LIST_STATUSES_URL, "@LIST@", StringUtil.urlEncode(listName));
         url = StringUtil.replace(url, "@USERNAME@", username);
         System.out.println("Loading custom URL: " + url);
-        return requestTimeline(url);
+        return requestTimeline(url, FEED_LIST_STATUSES, listener);
     }
 
     void resetToken() {
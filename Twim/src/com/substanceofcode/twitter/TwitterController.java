@@ -21,8 +21,10 @@ package com.substanceofcode.twitter;
 
 import com.substanceofcode.infrastructure.Device;
 import com.substanceofcode.tasks.AbstractTask;
+import com.substanceofcode.tasks.TaskExecutor;
 import com.substanceofcode.twitter.model.MediaFileSelect;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.twitter.model.StatusStore;
 import com.substanceofcode.twitter.model.User;
 import com.substanceofcode.twitter.model.UserList;
 import com.substanceofcode.twitter.services.RefreshService;
@@ -54,7 +56,6 @@ import com.substanceofcode.twitter.views.menus.PhotoServicesMenu;
 import com.substanceofcode.twitter.views.menus.VideoServicesMenu;
 import com.substanceofcode.utils.Log;
 import java.io.IOException;
-import java.util.Calendar;
 import java.util.Enumeration;
 import java.util.Vector;
 import javax.microedition.lcdui.Alert;
@@ -89,6 +90,13 @@ public class TwitterController {
     Vector friendsStatuses;
     Vector favouriteTimeline;
     Vector retweetsOfMeTimeline;
+    /** Statuses of favouriteTimeline by id */
+    private StatusStore favouriteIndex = new StatusStore();
+    /** Favourite timeline still has statuses that have been unfavorited */
+    private boolean hasUnfavorited;
+
+    /** Size of status store that makes it pruned before next refresh */
+    private static final int PRUNE_STORE_SIZE = 400;
 
     private static final int PUBLIC_TIMELINE = 0;
     private static final int HOME_TIMELINE = 1;
@@ -100,6 +108,8 @@ public class TwitterController {
     private static final int SEARCH_TIMELINE = 7;
     private static final int RETWEETS_OF_ME_TIMELINE = 8;
     int currentTimeline;
+    /** Timeline on screen, restored if a request is cancelled */
+    private int shownTimeline;
 
     static TwitterController instance;
 
@@ -138,8 +148,14 @@ public class TwitterController {
     }
 
     public void addFavoriteStatus(Status favoriteStatus) {
-        if(favouriteTimeline!=null) {
+        if(favoriteStatus==null || favoriteStatus.getId()==0) {
+            return;
+        }
+        favoriteStatus.setFavorite(true);
+        if(favouriteTimeline!=null
+                && favouriteIndex.get(favoriteStatus.getId())==null) {
             favouriteTimeline.addElement(favoriteStatus);
+            favouriteIndex.put(favoriteStatus);
         }
     }
 
@@ -210,6 +226,10 @@ public class TwitterController {
         int theme = settings.getIntProperty(Settings.THEME, 0);
         Theme.setTheme(theme);
 
+        /** JSON responses are about a quarter smaller than XML */
+        boolean jsonFeeds = settings.getBooleanProperty(Settings.JSON_FEEDS, true);
+        api.setJsonFormat(jsonFeeds);
+
         /** Start refresh service */
         boolean refresh = settings.getBooleanProperty(Settings.REFRESH, false);
         RefreshService refreshService = RefreshService.getInstance();
@@ -293,22 +313,52 @@ public class TwitterController {
 
     public void setPublicTimeline(Vector publicTimeline) {
         this.publicTimeline = publicTimeline;
+        pruneStoresIfFull();
     }
 
     public void setResponsesTimeline(Vector responsesTimeline) {
         this.responsesTimeline = responsesTimeline;
+        pruneStoresIfFull();
     }
 
     public void setUserTimeline(Vector archiveTimeline) {
         this.archiveTimeline = archiveTimeline;
+        pruneStoresIfFull();
     }
 
     public void setDirectTimeline(Vector directTimeline) {
         this.directTimeline = directTimeline;
+        pruneStoresIfFull();
     }
 
     public void setFriendsStatuses(Vector friendStatuses) {
         this.friendsStatuses = friendStatuses;
+        pruneStoresIfFull();
+    }
+
+    /** Prune stores when they have grown large between refreshes */
+    private void pruneStoresIfFull() {
+        if(api.getStatusStore().size()>=PRUNE_STORE_SIZE) {
+            pruneStores();
+        }
+    }
+
+    /**
+     * Drop statuses and users that are no longer in any timeline or on
+     * screen. Called once per refresh cycle and when the store is full.
+     */
+    public void pruneStores() {
+        Vector[] timelines = {
+            homeTimeline, archiveTimeline, responsesTimeline, publicTimeline,
+            directTimeline, friendsStatuses, favouriteTimeline,
+            retweetsOfMeTimeline, timeline.getTimeline()
+        };
+        StatusStore store = api.getStatusStore();
+        /** Parsers wait for the store until both have been pruned */
+        synchronized(store) {
+            store.retain(timelines);
+            api.getUserPool().retain(timelines);
+        }
     }
 
     public void showCamera() {
@@ -421,7 +471,7 @@ public class TwitterController {
             int page = 1;
             if(nextPage) {
                 if(retweetsOfMeTimeline!=null) {
-                    int pages = retweetsOfMeTimeline.size() / 20;
+                    int pages = retweetsOfMeTimeline.size() / TwitterApi.PAGE_SIZE;
                     page += pages;
                 }
             }
@@ -502,10 +552,15 @@ public class TwitterController {
      */
     public void setHomeTimeline(Vector timeline) {
         this.homeTimeline = timeline;
+        pruneStoresIfFull();
     }
 
     public void setFavouriteTimeline(Vector timeline) {
         this.favouriteTimeline = timeline;
+        Vector[] favourites = { timeline };
+        favouriteIndex.retain(favourites);
+        hasUnfavorited = false;
+        pruneStoresIfFull();
     }
     
     /** Show login form */
@@ -527,6 +582,48 @@ public class TwitterController {
     }
 
     public void showHomeTimeline(boolean nextPage) {
+        showHomeTimeline(nextPage, TaskExecutor.PRIORITY_USER);
+    }
+
+    /**
+     * Fetch new home timeline statuses in the background, used by
+     * auto-refresh. Cached timelines are kept and only statuses newer than
+     * sinceId are requested.
+     * @param sinceId   Id of the newest status in home timeline or 0.
+     */
+    public void refreshHomeTimeline(long sinceId) {
+        if(homeTimeline==null || sinceId==0) {
+            setHomeTimeline(null);
+            showHomeTimeline(false, TaskExecutor.PRIORITY_BACKGROUND);
+            return;
+        }
+        RequestTimelineTask task = new RequestTimelineTask(
+            this, api, RequestTimelineTask.FEED_HOME, 1);
+        task.setSinceId(sinceId);
+        task.setPriority(TaskExecutor.PRIORITY_BACKGROUND);
+        task.execute();
+    }
+
+    /**
+     * Add new statuses to the head of home timeline. Existing statuses are
+     * kept so their wrapped text doesn't need to be formatted again.
+     * @param newStatuses   Statuses newer than home timeline, newest first.
+     */
+    public void mergeHomeTimeline(Vector newStatuses) {
+        Vector merged = new Vector();
+        addToTimeline(merged, newStatuses);
+        /** Full page of new statuses may leave a gap, so start over */
+        if(homeTimeline!=null && newStatuses.size()<TwitterApi.PAGE_SIZE) {
+            addToTimeline(merged, homeTimeline);
+        }
+        setHomeTimeline(merged);
+        if(currentTimeline==HOME_TIMELINE) {
+            timeline.setTimeline(merged);
+            refreshTimeline();
+        }
+    }
+
+    private void showHomeTimeline(boolean nextPage, int priority) {
         currentTimeline = HOME_TIMELINE;
         timeline.showDrawNextPageLink(true);
         if( homeTimeline==null || nextPage) {
@@ -534,12 +631,13 @@ public class TwitterController {
             int page = 1;
             if(nextPage) {
                 if(homeTimeline!=null) {
-                    int pages = homeTimeline.size() / 20;
+                    int pages = homeTimeline.size() / TwitterApi.PAGE_SIZE;
                     page += pages;
                 }
             }
             RequestTimelineTask task = new RequestTimelineTask(
                 this, api, RequestTimelineTask.FEED_HOME, page);
+            task.setPriority(priority);
             WaitCanvas wait = new WaitCanvas(this, task);
             wait.setWaitText("Loading your timeline...");
             if(display.getCurrent()!=null || tweetsShownOnce==false) {
@@ -565,11 +663,29 @@ public class TwitterController {
             wait.setWaitText("Loading your timeline...");
             display.setCurrent(wait);
         } else {
+            removeUnfavorited();
             timeline.setTimeline( favouriteTimeline );
             timeline.resetScrolling();
             display.setCurrent( timeline );
         }
     }
+
+    /** Drop statuses that have been unfavorited from favourite timeline */
+    private void removeUnfavorited() {
+        if(!hasUnfavorited) {
+            return;
+        }
+        Vector favourites = new Vector(favouriteIndex.size());
+        Enumeration en = favouriteTimeline.elements();
+        while(en.hasMoreElements()) {
+            Status status = (Status)en.nextElement();
+            if(status.getId()==0 || favouriteIndex.get(status.getId())!=null) {
+                favourites.addElement(status);
+            }
+        }
+        favouriteTimeline = favourites;
+        hasUnfavorited = false;
+    }
     
     public void showTimeline(Vector timelineFeed) {
         if(timelineFeed==null || timelineFeed.isEmpty()) {
@@ -583,6 +699,24 @@ public class TwitterController {
         }
     }
 
+    /**
+     * Show timeline that is still being loaded. More statuses are added to
+     * the given vector and shown with refreshTimeline().
+     */
+    public void showPartialTimeline(Vector timelineFeed) {
+        timeline.setTimeline( timelineFeed );
+        timeline.resetScrolling();
+        /** Don't show if we are in minimized mode */
+        if(display.getCurrent()!=null) {
+            display.setCurrent( timeline );
+        }
+    }
+
+    /** Repaint timeline after statuses have been added to it */
+    public void refreshTimeline() {
+        timeline.repaint();
+    }
+
     /** Show current timeline */
     public void showTimeline() {
         timeline.resetScrolling();
@@ -602,9 +736,7 @@ public class TwitterController {
         timeline.showDrawNextPageLink(false);
         empty.addElement(
                 new Status(
-                "Twim", "Select what tweets you'd like to see",
-                Calendar.getInstance().getTime(),
-                "0")
+                "Twim", "Select what tweets you'd like to see")
             );
         if(Device.isTouch()) {
             timeline.resetMenuTab();
@@ -618,11 +750,20 @@ public class TwitterController {
      * @param unfavoriteStatus Status that have been unfavorited.
      */
     public void removeFavoriteStatus(Status unfavoriteStatus) {
-        Enumeration enu = favouriteTimeline.elements();
-        while(enu.hasMoreElements()) {
-            Status stat = (Status) enu.nextElement();
-            if(stat.getId().equals(unfavoriteStatus.getId())) {
-                favouriteTimeline.removeElement(stat);
+        if(unfavoriteStatus==null || unfavoriteStatus.getId()==0) {
+            return;
+        }
+        Status status = api.getStatusStore().get(unfavoriteStatus.getId());
+        if(status==null) {
+            status = unfavoriteStatus;
+        }
+        status.setFavorite(false);
+        /** Timeline is updated when it is shown next time */
+        if(favouriteIndex.remove(status.getId())!=null) {
+            hasUnfavorited = true;
+            if(currentTimeline==FAVOURITE_TIMELINE) {
+                removeUnfavorited();
+                timeline.setTimeline(favouriteTimeline);
             }
         }
     }
@@ -661,6 +802,21 @@ public class TwitterController {
         display.setCurrent(timeline);
     }
 
+    /** Called by the timeline view when its statuses are on screen */
+    public void timelineShown() {
+        shownTimeline = currentTimeline;
+    }
+
+    /**
+     * Return to the timeline that was on screen when a request was
+     * cancelled, so that later updates go to the right timeline.
+     */
+    public void showTimelineBeforeRequest() {
+        currentTimeline = shownTimeline;
+        timeline.restoreShownTimeline();
+        showPreviousTimeline();
+    }
+
     /**
      * Get recent status items.
      * @return recent status items in vector
@@ -754,6 +910,7 @@ public class TwitterController {
 
     public void setRetweetsOfMeTimeline(Vector timeline) {
         this.retweetsOfMeTimeline = timeline;
+        pruneStoresIfFull();
     }
 
     public Vector getRetweetsOfMeTimeline() {
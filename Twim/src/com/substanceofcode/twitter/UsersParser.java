@@ -21,11 +21,13 @@ package com.substanceofcode.twitter;
 
 import com.substanceofcode.twitter.model.Status;
 import com.substanceofcode.twitter.model.User;
+import com.substanceofcode.twitter.model.UserPool;
 import com.substanceofcode.utils.CustomInputStream;
 import com.substanceofcode.utils.ResultParser;
+import com.substanceofcode.utils.Utf8;
 import com.substanceofcode.utils.XmlParser;
+import com.substanceofcode.utils.XmlSymbolTable;
 import java.io.IOException;
-import java.util.Date;
 import java.util.Vector;
 
 /**
@@ -34,7 +36,33 @@ import java.util.Vector;
  */
 public class UsersParser implements ResultParser {
 
+    /** Element paths handled by the parser */
+    private static final int USER = 0;
+    private static final int ID = 1;
+    private static final int SCREEN_NAME = 2;
+    private static final int LOCATION = 3;
+    private static final int STATUS = 4;
+    private static final int STATUS_ID = 5;
+    private static final int STATUS_TEXT = 6;
+    private static final int STATUS_CREATED_AT = 7;
+    private static final int PROFILE_IMAGE_URL = 8;
+
+    private static final XmlSymbolTable SYMBOLS = new XmlSymbolTable();
+    static {
+        SYMBOLS.addPath("user", USER);
+        SYMBOLS.addPath("user/id", ID);
+        SYMBOLS.addPath("user/screen_name", SCREEN_NAME);
+        SYMBOLS.addPath("user/location", LOCATION);
+        SYMBOLS.addPath("user/profile_image_url", PROFILE_IMAGE_URL);
+        SYMBOLS.addPath("user/status", STATUS);
+        SYMBOLS.addPath("user/status/id", STATUS_ID);
+        SYMBOLS.addPath("user/status/text", STATUS_TEXT);
+        SYMBOLS.addPath("user/status/created_at", STATUS_CREATED_AT);
+    }
+
     Vector users;
+    /** Pool the users are resolved through */
+    UserPool userPool = new UserPool();
 
     public Vector getUsers() {
         return users;
@@ -72,90 +100,114 @@ public class UsersParser implements ResultParser {
      * @param is
      */
     public void parse(CustomInputStream is) throws IOException {
-        try {
-            XmlParser xml = new XmlParser(is);
-            users = new Vector();
-            while (xml.parse() != XmlParser.END_DOCUMENT) {
-                String elementName = xml.getName();
-                if (elementName.equals("user")) {
-                    String userXml = xml.getInnerXml();
-                    User user = parseUser( userXml );
-                    if(user!=null) {
-                        users.addElement( user );
-                    }
-                }
-            }
-        } catch (IOException ex) {
-            throw new IOException("IOException in UserParser.parse(): " + ex.getMessage());
-        }
-    }
-
-    private Status parseStatus(String screenName, String statusXml) 
-            throws IOException {
         String state = "";
         try {
-            XmlParser xml = new XmlParser(statusXml);
-            String text = "";
-            Date date = null;
-            String id = "";
+            XmlParser xml = new XmlParser(is, SYMBOLS);
+            users = new Vector();
+            long id = 0;
+            User user = null;
+            String location = null;
+            String profileImageUrl = null;
+            boolean hasStatus = false;
+            long statusId = 0;
+            byte[] statusText = null;
+            long statusCreatedAt = 0;
+            boolean userStarted = false;
+            state = "starting parsing ";
             while (xml.parse() != XmlParser.END_DOCUMENT) {
-                String elementName = xml.getName();
                 Thread.yield();
-                if(elementName.equals("text")) {
-                    text = xml.getText();
-                } else if(elementName.equals("id")) {
-                    id = xml.getText();
-                } else if(elementName.equals("created_at")) {
-                    String dateValue = xml.getText();
-                    date = StatusFeedParser.parseDate( dateValue );
+                switch(xml.getPathId()) {
+                    case USER:
+                        if(userStarted) {
+                            addUser(user, location, profileImageUrl, hasStatus,
+                                    statusId, statusText, statusCreatedAt);
+                        }
+                        userStarted = true;
+                        id = 0;
+                        user = null;
+                        location = null;
+                        profileImageUrl = null;
+                        hasStatus = false;
+                        statusId = 0;
+                        statusText = null;
+                        statusCreatedAt = 0;
+                        break;
+                    case ID:
+                        state = "getting id";
+                        int userIdLength = xml.readText();
+                        id = StatusFeedParser.parseId(xml.getTextBuffer(), userIdLength);
+                        break;
+                    case SCREEN_NAME:
+                        state = "getting screen_name";
+                        int nameLength = xml.readText();
+                        user = userPool.intern(id, xml.getTextBuffer(), nameLength);
+                        break;
+                    case LOCATION:
+                        state = "gettin location";
+                        location = xml.getText();
+                        break;
+                    case PROFILE_IMAGE_URL:
+                        profileImageUrl = xml.getText();
+                        break;
+                    case STATUS:
+                        state = "getting status";
+                        hasStatus = true;
+                        break;
+                    case STATUS_TEXT:
+                        int textLength = xml.readText();
+                        statusText = Utf8.encode(xml.getTextBuffer(), 0, textLength);
+                        break;
+                    case STATUS_ID:
+                        int idLength = xml.readText();
+                        statusId = StatusFeedParser.parseId(xml.getTextBuffer(), idLength);
+                        break;
+                    case STATUS_CREATED_AT:
+                        int length = xml.readText();
+                        statusCreatedAt = StatusFeedParser.parseTime(xml.getTextBuffer(), length);
+                        break;
+                    default:
+                        if(userStarted) {
+                            xml.skipElement();
+                        }
+                        break;
                 }
             }
-            Status status = new Status(screenName, text, date, id);
-            return status;
+            if(userStarted) {
+                state = "creating new user instance";
+                addUser(user, location, profileImageUrl, hasStatus,
+                        statusId, statusText, statusCreatedAt);
+            }
         } catch (Exception ex) {
-            throw new IOException("Err in parseStatus: " + ex.getMessage());
+            throw new IOException("Err while " + state + " in UsersParser.parse(): " + ex.getMessage());
         }
     }
 
-    private User parseUser(String userXml) throws IOException {
-        if(userXml==null) {
-            return null;
+    void addUser(User user, String location, String profileImageUrl,
+            boolean hasStatus, long statusId, byte[] statusText, long statusCreatedAt) {
+        if(user==null) {
+            user = userPool.intern("");
         }
-        String state = "";
-        try {
-            //System.out.println("USERXML: " + userXml);
-            XmlParser xml = new XmlParser(userXml);
-            String id = "";
-            String screenName = "";
-            String location = "";
-            Status status = null;
-            state = "starting parsing ";
-            while (xml.parse() != XmlParser.END_DOCUMENT) {
-                Thread.yield();
-                String elementName = xml.getName();
-                if(elementName.equals("id")) {
-                    state = "getting id";
-                    id = xml.getText();
-                } else if(elementName.equals("screen_name")) {
-                    state = "getting screen_name";
-                    screenName = xml.getText();
-                } else if(elementName.equals("location")) {
-                    state = "gettin location";
-                    location = xml.getText();
-                } else if(elementName.equals("status")) {
-                    state = "getting status";
-                    String statusXml = xml.getOuterXml();
-                    status = parseStatus(screenName, statusXml);
-                }
+        if(location!=null) {
+            user.setLocation(location);
+        }
+        if(profileImageUrl!=null) {
+            user.setProfileImageUrl(profileImageUrl);
+        }
+        if(hasStatus) {
+            if(statusText==null) {
+                statusText = new byte[0];
             }
-            state = "creating new user instance";
-            User user = new User(id, screenName, location, status);
-            return user;
-        } catch (IOException ex) {
-            String sample = userXml;
-            throw new IOException("Err while " + state + " in UsersParser.parseUser: " + ex.getMessage()
-                    + "\nXML: " + sample);
+            user.setLastStatus(new Status(user, statusText, statusCreatedAt, statusId));
         }
+        users.addElement( user );
+    }
+
+    /**
+     * Set pool of known users. Users that are already in the pool are
+     * updated with the details of the response.
+     */
+    void setUserPool(UserPool userPool) {
+        this.userPool = userPool;
     }
 
 }
@@ -18,134 +18,188 @@
  */
 package com.substanceofcode.twitter.model;
 
-import com.substanceofcode.utils.Log;
 import com.substanceofcode.utils.StringUtil;
-import java.util.Date;
+import com.substanceofcode.utils.TimeUtil;
+import com.substanceofcode.utils.Utf8;
 import javax.microedition.io.ConnectionNotFoundException;
 import javax.microedition.lcdui.Font;
 import javax.microedition.midlet.MIDlet;
 
 /**
  * StatusEntry
+ *
+ * Statuses are kept in memory in a compact form: ids are numbers, the
+ * creation time is in seconds since epoch, the booleans share one int
+ * and the text is held as UTF-8 bytes until it is first displayed. The
+ * author is a User shared with the other statuses of the same author.
  * 
  * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
  */
 public class Status {
 
-    private String screenName;
+    /** Bits of the flags field */
+    private static final int DIRECT = 1;
+    private static final int FAVORITE = 2;
+    private static final int FOLLOWING = 4;
+
+    private User user;
+    /** UTF-8 text, released when the text has been decoded */
+    private byte[] textBytes;
     private String statusText;
-    private Date date;
-    private String id;
-    private String inReplyToId;
-    private boolean isDirect;
-    private boolean isFavorite;
-    private boolean isFollowing;
-    /** For optimizations */
-    private int height;
+    /** Seconds since epoch */
+    private long createdAt;
+    private long id;
+    private long inReplyToId;
+    private int flags;
+    /** Wrapped text, valid for the width and font it was wrapped with */
     private String[] textLines;
-
-    /** Creates a new instance of StatusEntry 
-     * @param screenName 
-     * @param statusText 
-     * @param date 
+    private int textLinesWidth;
+    private Font textLinesFont;
+    /** Text below the status and the minute it was formatted in */
+    private String infoText;
+    private int infoTextMinute;
+
+    /**
+     * Creates a new instance of StatusEntry
+     * @param user          Sender of the status.
+     * @param textBytes     Status text as UTF-8.
+     * @param createdAt     Seconds since epoch, 0 for current time.
+     * @param id            Status id, 0 if not known.
      */
-    public Status(String screenName, String statusText, Date date, String id) {
-        this.screenName = screenName;
-        this.statusText = statusText;
-        if(date!=null) {
-            this.date = date;
+    public Status(User user, byte[] textBytes, long createdAt, long id) {
+        this.user = user;
+        this.textBytes = textBytes;
+        if(createdAt!=0) {
+            this.createdAt = createdAt;
         } else {
-            this.date = new Date(System.currentTimeMillis());
+            this.createdAt = System.currentTimeMillis() / 1000L;
         }
-        this.height = 0;
         this.id = id;
-        this.isDirect = false;
-        this.isFavorite = false;
+    }
 
-        Log.debug("Date: " + date);
+    /** Creates a new instance of StatusEntry */
+    public Status(User user, String statusText, long createdAt, long id) {
+        this(user, Utf8.encode(statusText), createdAt, id);
+    }
+
+    /**
+     * Creates a status for a local message, eg. an error, that is stamped
+     * with the current time.
+     */
+    public Status(String screenName, String statusText) {
+        this(new User(0, screenName), Utf8.encode(statusText), 0, 0);
     }
 
     public void setFollowing(boolean isFollowing) {
-        this.isFollowing = isFollowing;
+        setFlag(FOLLOWING, isFollowing);
     }
 
     public boolean isFollowing() {
-        return isFollowing;
+        return (flags & FOLLOWING)!=0;
     }
 
-    public void setInReplyToId(String replyToId) {
+    public void setInReplyToId(long replyToId) {
         this.inReplyToId = replyToId;
     }
 
-    public String getInReplyToId() {
+    /** @return Id of the replied status or 0 */
+    public long getInReplyToId() {
         return this.inReplyToId;
     }
 
     public void setFavorite(boolean favorite) {
-        this.isFavorite = favorite;
+        setFlag(FAVORITE, favorite);
     }
 
     public boolean isFavorite() {
-        return this.isFavorite;
+        return (flags & FAVORITE)!=0;
     }
 
     public void setDirect(boolean isDirect) {
-        this.isDirect = isDirect;
+        setFlag(DIRECT, isDirect);
     }
 
     public boolean isDirect() {
-        return this.isDirect;
+        return (flags & DIRECT)!=0;
     }
 
-    public void createTextLines(int textBoxWidth, Font textFont) {
-        String[] text = {statusText};
-        textLines = StringUtil.formatMessage(text, textBoxWidth, textFont);
-    }
-
-    public String getText() {
-        return statusText;
+    private void setFlag(int flag, boolean value) {
+        if(value) {
+            flags |= flag;
+        } else {
+            flags &= ~flag;
+        }
     }
 
-    public String getScreenName() {
-        return screenName;
+    /**
+     * Get text wrapped to given width and font. Wrapped lines are kept
+     * and the text is wrapped again only when the width or font changes,
+     * eg. when the screen is rotated or the theme is changed.
+     */
+    public String[] getTextLines(int textBoxWidth, Font textFont) {
+        if(textLines==null || textLinesWidth!=textBoxWidth || textLinesFont!=textFont) {
+            String[] text = {getText()};
+            textLines = StringUtil.formatMessage(text, textBoxWidth, textFont);
+            textLinesWidth = textBoxWidth;
+            textLinesFont = textFont;
+        }
+        return textLines;
     }
 
-    public Date getDate() {
-        return date;
+    /**
+     * Get the author and the age of the status, formatted again only when
+     * the minute has changed.
+     * @param minute    Current minute from TimeUtil.getMinute().
+     */
+    public String getInfoText(long minute) {
+        if(infoText==null || infoTextMinute!=(int)minute) {
+            infoText = user.getScreenName() + ", "
+                    + TimeUtil.getTimeInterval(createdAt) + " ago";
+            infoTextMinute = (int)minute;
+        }
+        return infoText;
     }
 
-    public int getHeight() {
-        return height;
+    /** Get status text, decoding it on first call */
+    public synchronized String getText() {
+        if(statusText==null) {
+            statusText = Utf8.decode(textBytes);
+            textBytes = null;
+        }
+        return statusText;
     }
 
-    public String getId() {
-        return id;
+    public User getUser() {
+        return user;
     }
 
-    public String[] getTextLines() {
-        return textLines;
+    public String getScreenName() {
+        return user.getScreenName();
     }
 
-    public void clearTextLines() {
-        textLines = null;
+    /** @return Seconds since epoch */
+    public long getCreatedAt() {
+        return createdAt;
     }
 
-    public void setHeight(int h) {
-        height = h;
+    /** @return Status id or 0 for local messages */
+    public long getId() {
+        return id;
     }
 
     /** Check if status has a link */
     public boolean hasLink() {
-        if (statusText.indexOf("http://") >= 0) {
-            return true;
-        } else {
-            return false;
+        /** Text may be decoded and the bytes released by another thread */
+        byte[] bytes = textBytes;
+        if(bytes==null) {
+            return getText().indexOf("http://") >= 0;
         }
+        return Utf8.indexOf(bytes, "http://", 0) >= 0;
     }
 
     /** Launch link */
     public void openInBrowser(MIDlet midlet) {
-        String url = "http://twitter.com/" + screenName + "/statuses/" + id;
+        String url = "http://twitter.com/" + user.getScreenName() + "/statuses/" + id;
         try {
             /** Open link in browser */
             if (midlet.platformRequest(url)) {
@@ -159,16 +213,17 @@ public class Status {
 
     public void openIncludedLink(MIDlet midlet) {
         String url = "";
-        int startIndex = statusText.indexOf("http://");
+        String text = getText();
+        int startIndex = text.indexOf("http://");
         if (startIndex >= 0) {
-            int endIndex = statusText.indexOf(" ", startIndex);
+            int endIndex = text.indexOf(" ", startIndex);
             if (endIndex > 0) {
-                url = statusText.substring(startIndex, endIndex);
+                url = text.substring(startIndex, endIndex);
             } else {
-                url = statusText.substring(startIndex);
+                url = text.substring(startIndex);
             }
         } else {
-            url = "http://twitter.com/" + screenName + "/statuses/" + id;
+            url = "http://twitter.com/" + user.getScreenName() + "/statuses/" + id;
         }
         try {
             /** Open link in browser */
@@ -0,0 +1,176 @@
+/*
+ * StatusStore.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.twitter.model;
+
+import java.util.Vector;
+
+/**
+ * Statuses of all timelines indexed by id, so that a tweet that is in
+ * several timelines is one Status instance with one set of wrapped text
+ * lines. Direct messages have ids of their own and are not stored here.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class StatusStore {
+
+    /** Open addressing hash table, empty slots have null status */
+    private long[] ids;
+    private Status[] statuses;
+    private int size;
+
+    /** Creates a new instance of StatusStore */
+    public StatusStore() {
+        clear();
+    }
+
+    /**
+     * Get status by id.
+     * @return Stored status or null.
+     */
+    public synchronized Status get(long id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while(statuses[slot]!=null) {
+            if(ids[slot]==id) {
+                return statuses[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /** Add status, replacing a stored status with the same id */
+    public synchronized void put(Status status) {
+        long id = status.getId();
+        if(id==0) {
+            return;
+        }
+        if((size + 1) * 2>ids.length) {
+            rehash(ids.length * 2);
+        }
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while(statuses[slot]!=null) {
+            if(ids[slot]==id) {
+                statuses[slot] = status;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        statuses[slot] = status;
+        size++;
+    }
+
+    /**
+     * Remove status by id.
+     * @return Removed status or null.
+     */
+    public synchronized Status remove(long id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while(statuses[slot]!=null) {
+            if(ids[slot]==id) {
+                Status removed = statuses[slot];
+                statuses[slot] = null;
+                size--;
+                /** Move following entries of the probe chain to the hole */
+                int hole = slot;
+                slot = (slot + 1) & mask;
+                while(statuses[slot]!=null) {
+                    int home = hash(ids[slot]) & mask;
+                    if(((slot - home) & mask)>=((slot - hole) & mask)) {
+                        ids[hole] = ids[slot];
+                        statuses[hole] = statuses[slot];
+                        statuses[slot] = null;
+                        hole = slot;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        ids = new long[64];
+        statuses = new Status[64];
+        size = 0;
+    }
+
+    /**
+     * Keep only the statuses of given timelines so that the store does
+     * not hold on to statuses of replaced timelines. Direct messages are
+     * skipped.
+     * @param timelines     Vectors of statuses, null elements are skipped.
+     */
+    public synchronized void retain(Vector[] timelines) {
+        int count = 0;
+        for(int index=0; index<timelines.length; index++) {
+            if(timelines[index]!=null) {
+                count += timelines[index].size();
+            }
+        }
+        int capacity = 64;
+        while(capacity<count * 2) {
+            capacity *= 2;
+        }
+        ids = new long[capacity];
+        statuses = new Status[capacity];
+        size = 0;
+        for(int index=0; index<timelines.length; index++) {
+            Vector timeline = timelines[index];
+            if(timeline==null) {
+                continue;
+            }
+            for(int statusIndex=0; statusIndex<timeline.size(); statusIndex++) {
+                Status status = (Status)timeline.elementAt(statusIndex);
+                if(!status.isDirect()) {
+                    put(status);
+                }
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldIds = ids;
+        Status[] oldStatuses = statuses;
+        ids = new long[capacity];
+        statuses = new Status[capacity];
+        size = 0;
+        for(int slot=0; slot<oldStatuses.length; slot++) {
+            if(oldStatuses[slot]!=null) {
+                put(oldStatuses[slot]);
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
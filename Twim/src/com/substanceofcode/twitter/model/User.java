@@ -20,33 +20,55 @@
 package com.substanceofcode.twitter.model;
 
 /**
- * User entity in Twitter world.
+ * User entity in Twitter world. Users are shared through UserPool, so
+ * one instance stands for an author in all statuses.
  * @author Tommi Laukkanen
  */
 public class User {
 
-    String id;
+    long id;
     String screenName;
-    Status lastStatus;
     String location;
+    String profileImageUrl;
+    Status lastStatus;
 
-    public User(String id, String screenName, String location, Status lastStatus) {
+    /**
+     * Creates a new instance of User
+     * @param id            User id, 0 if not known.
+     * @param screenName    Screen name of the user.
+     */
+    public User(long id, String screenName) {
         this.id = id;
         this.screenName = screenName;
-        this.location = location;
-        this.lastStatus = lastStatus;
     }
 
-    public String getId() {
+    public long getId() {
         return id;
     }
+    public void setId(long id) {
+        this.id = id;
+    }
     public String getScreenName() {
         return screenName;
     }
+    /** @return Location or null if not known */
     public String getLocation() {
         return location;
     }
+    public void setLocation(String location) {
+        this.location = location;
+    }
+    /** @return Profile image url or null if not known */
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
     public Status getLastStatus() {
         return lastStatus;
     }
+    public void setLastStatus(Status lastStatus) {
+        this.lastStatus = lastStatus;
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * UserPool.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.twitter.model;
+
+import java.util.Vector;
+
+/**
+ * Users of all timelines indexed by screen name, so that the statuses of
+ * an author refer to one User instance and the name, location and
+ * profile image url are kept in memory once. Parsers resolve authors
+ * straight from their text buffer, a name string is only created for a
+ * user that is not in the pool yet.
+ *
+ * The pool is bounded. When it is full it is emptied and filled again
+ * from the following statuses; statuses keep the users they refer to.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class UserPool {
+
+    /** Maximum number of pooled users */
+    private static final int MAX_SIZE = 256;
+
+    /** Open addressing hash table, at most half full */
+    private User[] users;
+    private int size;
+
+    /** Creates a new instance of UserPool */
+    public UserPool() {
+        clear();
+    }
+
+    /**
+     * Get user by screen name, adding a new user if there is none.
+     * @param id        User id or 0 if not known. A known id is set to a
+     *                  pooled user that does not have one.
+     * @param chars     Buffer holding the screen name.
+     * @param length    Length of the screen name.
+     * @return Pooled user.
+     */
+    public synchronized User intern(long id, char[] chars, int length) {
+        int mask = users.length - 1;
+        int slot = hash(chars, length) & mask;
+        while(users[slot]!=null) {
+            User user = users[slot];
+            if(equals(user.getScreenName(), chars, length)) {
+                if(user.getId()==0) {
+                    user.setId(id);
+                }
+                return user;
+            }
+            slot = (slot + 1) & mask;
+        }
+        User user = new User(id, new String(chars, 0, length));
+        add(user);
+        return user;
+    }
+
+    /** Get user by screen name, adding a new user if there is none */
+    public User intern(String screenName) {
+        return intern(0, screenName.toCharArray(), screenName.length());
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        users = new User[MAX_SIZE * 2];
+        size = 0;
+    }
+
+    /**
+     * Keep only the authors of given timelines so that the pool does not
+     * hold on to users of replaced timelines.
+     * @param timelines     Vectors of statuses, null elements are skipped.
+     */
+    public synchronized void retain(Vector[] timelines) {
+        users = new User[MAX_SIZE * 2];
+        size = 0;
+        for(int index=0; index<timelines.length; index++) {
+            Vector timeline = timelines[index];
+            if(timeline==null) {
+                continue;
+            }
+            for(int statusIndex=0; statusIndex<timeline.size(); statusIndex++) {
+                User user = ((Status)timeline.elementAt(statusIndex)).getUser();
+                if(!contains(user)) {
+                    add(user);
+                }
+            }
+        }
+    }
+
+    private boolean contains(User user) {
+        String screenName = user.getScreenName();
+        int mask = users.length - 1;
+        int slot = hash(screenName) & mask;
+        while(users[slot]!=null) {
+            if(users[slot].getScreenName().equals(screenName)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Add user that is not in the pool, emptying a full pool first */
+    private void add(User user) {
+        if(size==MAX_SIZE) {
+            users = new User[MAX_SIZE * 2];
+            size = 0;
+        }
+        int mask = users.length - 1;
+        int slot = hash(user.getScreenName()) & mask;
+        while(users[slot]!=null) {
+            slot = (slot + 1) & mask;
+        }
+        users[slot] = user;
+        size++;
+    }
+
+    private static boolean equals(String screenName, char[] chars, int length) {
+        if(screenName.length()!=length) {
+            return false;
+        }
+        for(int index=0; index<length; index++) {
+            if(screenName.charAt(index)!=chars[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Same as String.hashCode of the name, spread to the low bits */
+    private static int hash(char[] chars, int length) {
+        int hash = 0;
+        for(int index=0; index<length; index++) {
+            hash = 31 * hash + chars[index];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(String screenName) {
+        int hash = screenName.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -19,15 +19,15 @@
 
 package com.substanceofcode.twitter.services;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.PhotoService;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.CountingOutputStream;
 import com.substanceofcode.utils.CustomInputStream;
 import com.substanceofcode.utils.XmlParser;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Calendar;
-import java.util.Date;
 import javax.microedition.io.Connector;
 import javax.microedition.io.HttpConnection;
 
@@ -70,13 +70,19 @@ public class GenericUploadAndPostService implements PhotoService {
             String password,
             String filename) throws IOException, Exception {
         HttpConnection connection = null;
+        TaskProgress progress = TaskProgress.getCurrent();
         String state = "posting";
         try {
             connection = (HttpConnection) Connector.open( url );
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(connection);
+            }
             connection.setRequestMethod( HttpConnection.POST );
             String boundary = "BoUnDaRy888";
             connection.setRequestProperty("Content-Type", "multipart/form-data; charset=UTF-8; boundary=" + boundary);
-            DataOutputStream dos = connection.openDataOutputStream();
+            DataOutputStream dos = new DataOutputStream(new CountingOutputStream(
+                    connection.openOutputStream(), progress));
 
             // Media
             writeString(dos, "--" + boundary + "\r\n");
@@ -124,6 +130,7 @@ public class GenericUploadAndPostService implements PhotoService {
 
             InputStream his = connection.openInputStream();
             CustomInputStream is = new CustomInputStream(his);
+            is.setProgress(progress);
 
             state = "parsing response";
 
@@ -189,11 +196,10 @@ public class GenericUploadAndPostService implements PhotoService {
 
             // Create status based on response
             Status stat = null;
-            Date now = Calendar.getInstance().getTime();
             if(status) {
-                stat = new Status(username, comment + " - " + mediaUrl, now, "");
+                stat = new Status(username, comment + " - " + mediaUrl);
             } else {
-                stat = new Status("Remote API", "Error in URL: " + url + " Err: " + err + " Response: " + response, now, "");
+                stat = new Status("Remote API", "Error in URL: " + url + " Err: " + err + " Response: " + response);
             }
             return stat;
 
@@ -202,6 +208,9 @@ public class GenericUploadAndPostService implements PhotoService {
         } catch (Exception e) {
             throw new Exception("Error while " + state + ": " + e.toString());
         } finally {
+            if(progress!=null) {
+                progress.setConnection(null);
+            }
             if (connection != null) {
                 connection.close();
             }
@@ -19,15 +19,15 @@
 
 package com.substanceofcode.twitter.services;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.PhotoService;
 import com.substanceofcode.twitter.VideoService;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.CountingOutputStream;
 import com.substanceofcode.utils.CustomInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Calendar;
-import java.util.Date;
 import javax.microedition.io.Connector;
 import javax.microedition.io.HttpConnection;
 
@@ -63,12 +63,18 @@ public class Mobypicture implements PhotoService, VideoService {
             String password,
             String filename) throws IOException, Exception {
         HttpConnection connection = null;
+        TaskProgress progress = TaskProgress.getCurrent();
         try {
             connection = (HttpConnection) Connector.open(MOBYPICTURE_URL);
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(connection);
+            }
             connection.setRequestMethod( HttpConnection.POST );
             String boundary = "BoUnDaRy888";
             connection.setRequestProperty("Content-Type", "multipart/form-data; charset=UTF-8; boundary=" + boundary);
-            DataOutputStream dos = connection.openDataOutputStream();
+            DataOutputStream dos = new DataOutputStream(new CountingOutputStream(
+                    connection.openOutputStream(), progress));
 
             // Action
             writeString(dos, "--" + boundary + "\r\n");
@@ -116,6 +122,7 @@ public class Mobypicture implements PhotoService, VideoService {
 
             InputStream his = connection.openInputStream();
             CustomInputStream is = new CustomInputStream(his);
+            is.setProgress(progress);
 
             // Prepare buffer for input data
             StringBuffer inputBuffer = new StringBuffer();
@@ -154,11 +161,10 @@ public class Mobypicture implements PhotoService, VideoService {
 
             // Create status based on response
             Status stat = null;
-            Date now = Calendar.getInstance().getTime();
             if(status) {
-                stat = new Status(username, comment + " - " + response, now, "");
+                stat = new Status(username, comment + " - " + response);
             } else {
-                stat = new Status("Mobypicture", "Error: " + err, now, "");
+                stat = new Status("Mobypicture", "Error: " + err);
             }
             return stat;
 
@@ -167,6 +173,9 @@ public class Mobypicture implements PhotoService, VideoService {
         } catch (Exception e) {
             throw new Exception("Error while posting: " + e.toString());
         } finally {
+            if(progress!=null) {
+                progress.setConnection(null);
+            }
             if (connection != null) {
                 connection.close();
             }
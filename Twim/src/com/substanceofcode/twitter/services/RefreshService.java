@@ -19,17 +19,22 @@
 
 package com.substanceofcode.twitter.services;
 
+import com.substanceofcode.tasks.TaskExecutor;
 import com.substanceofcode.twitter.TwitterController;
 import com.substanceofcode.twitter.model.Status;
+import java.util.Enumeration;
+import java.util.TimerTask;
 import java.util.Vector;
 
 /**
  *
  * @author Tommi Laukkanen
  */
-public class RefreshService implements Runnable {
+public class RefreshService extends TimerTask {
+
+    /** Time between refreshes, 5 min */
+    private static final long REFRESH_INTERVAL = 300000;
 
-    private Thread refreshThread;
     private TwitterController controller;
     private static RefreshService instance;
     private boolean active;
@@ -37,8 +42,8 @@ public class RefreshService implements Runnable {
     private RefreshService() {
         controller = TwitterController.getInstance();
         active = false;
-        refreshThread = new Thread(this);
-        refreshThread.start();
+        TaskExecutor.getInstance().getTimer().schedule(
+                this, REFRESH_INTERVAL, REFRESH_INTERVAL);
     }
 
     public static RefreshService getInstance() {
@@ -57,27 +62,26 @@ public class RefreshService implements Runnable {
     }
 
     public void run() {
-        while(true) {
-            try {
-                Thread.yield();
-                Thread.sleep(300000); // 5 min
-                boolean canAutorefresh = controller.canAutorefresh();
-                if(active && canAutorefresh) {
-                    controller.clearTimelines();
-                    controller.showHomeTimeline(false);
-                }
-            } catch (InterruptedException ex) {
-                ex.printStackTrace();
-            }
+        /** Drop statuses of replaced timelines once per cycle */
+        controller.pruneStores();
+        boolean canAutorefresh = controller.canAutorefresh();
+        if(active && canAutorefresh) {
+            controller.refreshHomeTimeline(getLastStatusId());
         }
     }
 
-    private String getLastStatusId() {
-        String lastStatusId = "";
+    /** Get id of the newest status in home timeline or 0 */
+    private long getLastStatusId() {
+        long lastStatusId = 0;
         Vector statuses = controller.getRecentStatuses();
-        if(statuses!=null && statuses.isEmpty()==false) {
-            Status status = (Status)statuses.lastElement();
-            lastStatusId = status.getId();
+        if(statuses!=null) {
+            Enumeration en = statuses.elements();
+            while(en.hasMoreElements()) {
+                Status status = (Status)en.nextElement();
+                if(status.getId()>lastStatusId) {
+                    lastStatusId = status.getId();
+                }
+            }
         }
         return lastStatusId;
     }
@@ -19,15 +19,15 @@
 
 package com.substanceofcode.twitter.services;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.*;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.CountingOutputStream;
 import com.substanceofcode.utils.CustomInputStream;
 import com.substanceofcode.utils.XmlParser;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Calendar;
-import java.util.Date;
 import javax.microedition.io.Connector;
 import javax.microedition.io.HttpConnection;
 
@@ -63,12 +63,18 @@ public class Twitgoo implements PhotoService {
             String password,
             String filename) throws IOException, Exception {
         HttpConnection connection = null;
+        TaskProgress progress = TaskProgress.getCurrent();
         try {
             connection = (HttpConnection) Connector.open(TWITGOO_URL);
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(connection);
+            }
             connection.setRequestMethod( HttpConnection.POST );
             String boundary = "BoUnDaRy888";
             connection.setRequestProperty("Content-Type", "multipart/form-data; charset=UTF-8; boundary=" + boundary);
-            DataOutputStream dos = connection.openDataOutputStream();
+            DataOutputStream dos = new DataOutputStream(new CountingOutputStream(
+                    connection.openOutputStream(), progress));
 
             // Media
             writeString(dos, "--" + boundary + "\r\n");
@@ -110,6 +116,7 @@ public class Twitgoo implements PhotoService {
 
             InputStream his = connection.openInputStream();
             CustomInputStream is = new CustomInputStream(his);
+            is.setProgress(progress);
 
             // Prepare buffer for input data
             StringBuffer inputBuffer = new StringBuffer();
@@ -155,11 +162,10 @@ public class Twitgoo implements PhotoService {
 
             // Create status based on response
             Status stat = null;
-            Date now = Calendar.getInstance().getTime();
             if(status) {
-                stat = new Status(username, mediaUrl + " - " + comment, now, "");
+                stat = new Status(username, mediaUrl + " - " + comment);
             } else {
-                stat = new Status("Twitgoo", err, now, "");
+                stat = new Status("Twitgoo", err);
             }
             return stat;
 
@@ -168,6 +174,9 @@ public class Twitgoo implements PhotoService {
         } catch (Exception e) {
             throw new Exception("Error while posting: " + e.toString());
         } finally {
+            if(progress!=null) {
+                progress.setConnection(null);
+            }
             if (connection != null) {
                 connection.close();
             }
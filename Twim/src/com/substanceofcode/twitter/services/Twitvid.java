@@ -19,14 +19,14 @@
 
 package com.substanceofcode.twitter.services;
 
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.VideoService;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.CountingOutputStream;
 import com.substanceofcode.utils.CustomInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Calendar;
-import java.util.Date;
 import javax.microedition.io.Connector;
 import javax.microedition.io.HttpConnection;
 
@@ -61,12 +61,18 @@ public class Twitvid implements VideoService {
             String password,
             String filename) throws IOException, Exception {
         HttpConnection connection = null;
+        TaskProgress progress = TaskProgress.getCurrent();
         try {
             connection = (HttpConnection) Connector.open(TWITVID_URL);
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(connection);
+            }
             connection.setRequestMethod( HttpConnection.POST );
             String boundary = "BoUnDaRy888";
             connection.setRequestProperty("Content-Type", "multipart/form-data; charset=UTF-8; boundary=" + boundary);
-            DataOutputStream dos = connection.openDataOutputStream();
+            DataOutputStream dos = new DataOutputStream(new CountingOutputStream(
+                    connection.openOutputStream(), progress));
 
             // Username
             writeString(dos, "--" + boundary + "\r\n");
@@ -101,6 +107,7 @@ public class Twitvid implements VideoService {
 
             InputStream his = connection.openInputStream();
             CustomInputStream is = new CustomInputStream(his);
+            is.setProgress(progress);
 
             // Prepare buffer for input data
             StringBuffer inputBuffer = new StringBuffer();
@@ -112,8 +119,7 @@ public class Twitvid implements VideoService {
                     inputBuffer.append((char) inputCharacter);
                 }
             } catch (IOException ex) {
-                Date now = Calendar.getInstance().getTime();
-                return new Status("Twitvid", "IO exception: " + ex.getMessage(), now, "");
+                return new Status("Twitvid", "IO exception: " + ex.getMessage());
             }
             //totalBytes += response.length();
             if(his!=null) {
@@ -147,11 +153,10 @@ public class Twitvid implements VideoService {
 
             // Create status based on response
             Status stat = null;
-            Date now = Calendar.getInstance().getTime();
             if(status) {
-                stat = new Status(username, comment + " - " + mediaUrl, now, "");
+                stat = new Status(username, comment + " - " + mediaUrl);
             } else {
-                stat = new Status("Twitvid", "Error: " + err, now, "");
+                stat = new Status("Twitvid", "Error: " + err);
             }
             return stat;
 
@@ -160,6 +165,9 @@ public class Twitvid implements VideoService {
         } catch (Exception e) {
             throw new Exception("Error while posting: " + e.toString());
         } finally {
+            if(progress!=null) {
+                progress.setConnection(null);
+            }
             if (connection != null) {
                 connection.close();
             }
@@ -38,15 +38,24 @@ public class RequestFriendsTask extends AbstractTask {
         this.api = api;
     }
 
+    public String getKey() {
+        return "friends";
+    }
+
     public void doTask() {
         String state = "";
         try {
             state = "requesting friends";
             Vector friendStatuses = api.requestFriendsTimeline();
+            if(isCancelled()) {
+                return;
+            }
             state = "showing friend statuses";
             controller.showFriends( friendStatuses );
         } catch(Exception ex) {
-            controller.showError("Error while " + state + ": " + ex.getMessage());
+            if(!isCancelled()) {
+                controller.showError("Error while " + state + ": " + ex.getMessage());
+            }
         }
     }
 
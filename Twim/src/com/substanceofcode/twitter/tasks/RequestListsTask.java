@@ -38,15 +38,24 @@ public class RequestListsTask extends AbstractTask {
         this.api = api;
     }
 
+    public String getKey() {
+        return "lists";
+    }
+
     public void doTask() {
         String state = "";
         try {
             state = "requesting lists";
             Vector lists = api.requestLists();
+            if(isCancelled()) {
+                return;
+            }
             state = "showing lists";
             controller.showLists( lists );
         } catch(Exception ex) {
-            controller.showError("Error while " + state + ": " + ex.getMessage());
+            if(!isCancelled()) {
+                controller.showError("Error while " + state + ": " + ex.getMessage());
+            }
             ex.printStackTrace();
         }
     }
@@ -20,9 +20,11 @@
 package com.substanceofcode.twitter.tasks;
 
 import com.substanceofcode.tasks.AbstractTask;
+import com.substanceofcode.twitter.StatusListener;
 import com.substanceofcode.twitter.TwitterApi;
 import com.substanceofcode.twitter.TwitterController;
 import com.substanceofcode.twitter.model.Status;
+import com.substanceofcode.utils.Log;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -31,13 +33,15 @@ import java.util.Vector;
  * 
  * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
  */
-public class RequestTimelineTask extends AbstractTask {
+public class RequestTimelineTask extends AbstractTask implements StatusListener {
 
     private TwitterController controller;
     private TwitterApi api;
     private int feedType;
     private int page;
     private String listName;
+    /** Only statuses newer than this are requested when set */
+    private long sinceId;
     public final static int FEED_HOME = 0;
     public final static int FEED_RESPONSES = 1;
     public final static int FEED_ARCHIVE = 2;
@@ -47,8 +51,13 @@ public class RequestTimelineTask extends AbstractTask {
     public final static int FEED_RETWEETS_OF_ME = 6;
     public final static int FEED_CUSTOM = 7;
 
-    private static String lastHomeStatusID = "";
-    private static String lastRetweetsOfMeStatusID = "";
+    /** Statuses shown while the rest of the page is still loading */
+    private Vector receivedStatuses = new Vector();
+
+    private static long lastHomeStatusID = 0;
+    private static long lastRetweetsOfMeStatusID = 0;
+    /** Size of the last full home timeline page for refresh statistics */
+    private static int lastHomePageBytes = 0;
     
     /** 
      * Creates a new instance of RequestFriendsTimelineTask.
@@ -81,20 +90,41 @@ public class RequestTimelineTask extends AbstractTask {
         this.feedType = FEED_CUSTOM;
     }
 
+    /**
+     * Request only statuses newer than the given one and merge them to the
+     * head of the current timeline. Used with FEED_HOME.
+     */
+    public void setSinceId(long sinceId) {
+        this.sinceId = sinceId;
+    }
+
+    /** Requests for the same page of the same feed are made once */
+    public String getKey() {
+        return "timeline " + feedType + " " + page + " " + listName + " " + sinceId;
+    }
+
     public void doTask() {
         Vector timeline = null;
-        if(feedType==FEED_HOME) {
-            timeline = api.requestHomeTimeline( page );
+        /** Pages appended to an existing timeline are shown when complete */
+        StatusListener listener = (page<2 ? this : null);
+        if(feedType==FEED_HOME && sinceId>0) {
+            refreshHomeTimeline();
+            return;
+        } else if(feedType==FEED_HOME) {
+            timeline = api.requestHomeTimeline( page, listener );
+            if(isCancelled()) {
+                return;
+            }
             if(timeline!=null && page==0) {
                 Status lastStatus = (Status) timeline.lastElement();
-                String newStatusID = lastStatus.getId();
-                if(lastHomeStatusID.length()>0 &&
-                        !lastHomeStatusID.equals(newStatusID)) {
+                long newStatusID = lastStatus.getId();
+                if(lastHomeStatusID!=0 && lastHomeStatusID!=newStatusID) {
                     controller.playInfoSound();
                 }
                 lastHomeStatusID = newStatusID;
             }
             if(page<2) {
+                lastHomePageBytes = getProgress().getBytesReceived();
                 controller.setHomeTimeline( timeline );
             } else {
                 Vector homeTimeline = controller.getHomeTimeline();
@@ -102,27 +132,45 @@ public class RequestTimelineTask extends AbstractTask {
                 controller.setHomeTimeline( timeline );
             }
         } else if(feedType==FEED_ARCHIVE) {
-            timeline = api.requestUserTimeline();
+            timeline = api.requestUserTimeline(listener);
+            if(isCancelled()) {
+                return;
+            }
             controller.setUserTimeline( timeline );
         } else if(feedType==FEED_RESPONSES) {
-            timeline = api.requestResponsesTimeline();
+            timeline = api.requestResponsesTimeline(listener);
+            if(isCancelled()) {
+                return;
+            }
             controller.setResponsesTimeline( timeline );
         } else if(feedType==FEED_PUBLIC) {
-            timeline = api.requestPublicTimeline();
+            timeline = api.requestPublicTimeline(listener);
+            if(isCancelled()) {
+                return;
+            }
             controller.setPublicTimeline( timeline );
         } else if(feedType==FEED_DIRECT) {
-            timeline = api.requestDirectTimeline();
+            timeline = api.requestDirectTimeline(listener);
+            if(isCancelled()) {
+                return;
+            }
             controller.setDirectTimeline(timeline);
         } else if(feedType==FEED_FAVOURITE) {
-            timeline = api.requestFavouriteTimeline();
+            timeline = api.requestFavouriteTimeline(listener);
+            if(isCancelled()) {
+                return;
+            }
             controller.setFavouriteTimeline(timeline);
         } else if(feedType==FEED_RETWEETS_OF_ME) {
-            timeline = api.requestRetweetsOfMe( page );
+            timeline = api.requestRetweetsOfMe( page, listener );
+            if(isCancelled()) {
+                return;
+            }
             if(timeline!=null && page==0) {
                 Status lastStatus = (Status) timeline.lastElement();
-                String newStatusID = lastStatus.getId();
-                if(lastRetweetsOfMeStatusID.length()>0 &&
-                        !lastRetweetsOfMeStatusID.equals(newStatusID)) {
+                long newStatusID = lastStatus.getId();
+                if(lastRetweetsOfMeStatusID!=0 &&
+                        lastRetweetsOfMeStatusID!=newStatusID) {
                     controller.playInfoSound();
                 }
                 lastRetweetsOfMeStatusID = newStatusID;
@@ -135,7 +183,10 @@ public class RequestTimelineTask extends AbstractTask {
                 controller.setRetweetsOfMeTimeline(timeline);
             }
         } else if(feedType==FEED_CUSTOM) {
-            timeline = api.requestListStatuses( this.listName );
+            timeline = api.requestListStatuses( this.listName, listener );
+            if(isCancelled()) {
+                return;
+            }
             controller.showTimeline(timeline);
         }
         boolean resetVerticalScrolling = true;
@@ -145,6 +196,37 @@ public class RequestTimelineTask extends AbstractTask {
         controller.showTimeline( timeline );
     }
 
+    /** Fetch statuses newer than sinceId and add them to home timeline */
+    private void refreshHomeTimeline() {
+        Vector newStatuses = api.requestHomeTimelineSince(sinceId);
+        if(isCancelled()) {
+            return;
+        }
+        int received = getProgress().getBytesReceived();
+        Log.debug("Refresh: " + newStatuses.size() + " new, " +
+                received + " bytes, saved " +
+                Math.max(0, lastHomePageBytes - received) + " bytes");
+        if(newStatuses.isEmpty()==false) {
+            controller.mergeHomeTimeline(newStatuses);
+        }
+    }
+
+    /**
+     * Show statuses as they are parsed. The first status replaces the wait
+     * screen and the rest are appended to the visible timeline.
+     */
+    public void statusReceived(Status status) {
+        if(isCancelled()) {
+            return;
+        }
+        receivedStatuses.addElement(status);
+        if(receivedStatuses.size()==1) {
+            controller.showPartialTimeline(receivedStatuses);
+        } else {
+            controller.refreshTimeline();
+        }
+    }
+
     private Vector appendToTimeline(Vector original, Vector added) {
         Vector newVector = new Vector();
         Enumeration orig = original.elements();
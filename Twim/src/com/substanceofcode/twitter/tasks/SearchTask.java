@@ -49,16 +49,25 @@ public class SearchTask extends AbstractTask {
         this.api = api;
     }
 
+    public String getKey() {
+        return "search " + page + " " + query;
+    }
+
     public void doTask() {
         String state = "";
         TwitterController controller = TwitterController.getInstance();
         try {
             state = "searching";
             Vector results = api.search(query, page);
+            if(isCancelled()) {
+                return;
+            }
             state = "showing results";
             controller.showTweets( results, "Results" );
         } catch(Exception ex) {
-            controller.showError("Error while " + state + ": " + ex.getMessage());
+            if(!isCancelled()) {
+                controller.showError("Error while " + state + ": " + ex.getMessage());
+            }
         }
     }
 
@@ -61,10 +61,15 @@ public class SendPhotoTask extends AbstractTask {
                     username,
                     password,
                     filename);
+            if(isCancelled()) {
+                return;
+            }
             controller.addStatus(stat);
             controller.showTimeline();
         } catch (Exception ex) {
-            controller.showError("Error while posting photo: " + ex.toString());
+            if(!isCancelled()) {
+                controller.showError("Error while posting photo: " + ex.toString());
+            }
         }
 
     }
@@ -61,11 +61,16 @@ public class SendVideoTask extends AbstractTask {
                     username,
                     password,
                     filename);
+            if(isCancelled()) {
+                return;
+            }
             controller.addStatus(stat);
             controller.showTimeline();
             //controller.showHomeTimeline();
         } catch (Exception ex) {
-            controller.showError("Error while posting video: " + ex.toString());
+            if(!isCancelled()) {
+                controller.showError("Error while posting video: " + ex.toString());
+            }
         }
 
     }
@@ -54,7 +54,9 @@ public class ToggleFavoriteTask extends AbstractTask {
             }
             controller.showPreviousTimeline();
         } catch(Exception ex) {
-            controller.showError("Error while marking tweet as favorite: " + ex.getMessage());
+            if(!isCancelled()) {
+                controller.showError("Error while marking tweet as favorite: " + ex.getMessage());
+            }
         }
         
     }
@@ -56,7 +56,9 @@ public class ToggleFollowingTask extends AbstractTask {
             }
             controller.showTimeline();
         } catch(Exception ex) {
-            controller.showError("Error while toggling following of user: " + ex.getMessage());
+            if(!isCancelled()) {
+                controller.showError("Error while toggling following of user: " + ex.getMessage());
+            }
         }
         
     }
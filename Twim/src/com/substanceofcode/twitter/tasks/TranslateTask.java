@@ -36,9 +36,16 @@ public class TranslateTask extends AbstractTask {
         this.status = status;
     }
 
+    public String getKey() {
+        return "translate " + status.getId();
+    }
+
     public void doTask() {
         String translatedText = GoogleTranslate.translate( status.getText() );
-        Status stat = new Status(status.getScreenName(), translatedText, status.getDate(), status.getId());
+        if(isCancelled()) {
+            return;
+        }
+        Status stat = new Status(status.getUser(), translatedText, status.getCreatedAt(), status.getId());
         TwitterController.getInstance().showSingleStatus(stat);
     }
 
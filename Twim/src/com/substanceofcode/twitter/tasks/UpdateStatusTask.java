@@ -58,7 +58,9 @@ public class UpdateStatusTask extends AbstractTask {
                 controller.addStatus(updatedStatus);
             }
         } finally {
-            controller.showHomeTimeline(false);
+            if(!isCancelled()) {
+                controller.showHomeTimeline(false);
+            }
         }
     }
     
@@ -0,0 +1,187 @@
+/*
+ * BalloonCache.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.twitter.views;
+
+import java.util.Hashtable;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Least recently used cache of rendered talk balloons. Balloons are keyed
+ * by status id, and an image is used only while the theme, the wrapped
+ * text and the text below the balloon are the same as when it was drawn.
+ *
+ * The cache has a byte budget. When memory is tight no image is created
+ * and the balloon is drawn directly.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class BalloonCache {
+
+    /** Estimated memory used by one pixel of an image */
+    private static final int BYTES_PER_PIXEL = 2;
+
+    /** Maximum size of the cache */
+    private static final int MAX_BUDGET = 512 * 1024;
+
+    /** Memory that is always left free for the rest of the application */
+    private static final int MIN_FREE_MEMORY = 128 * 1024;
+
+    private Hashtable entries = new Hashtable();
+    /** Most recently used entry first */
+    private Entry head;
+    private Entry tail;
+    private int budget;
+    private int usedBytes;
+
+    /** Creates a new instance of BalloonCache */
+    public BalloonCache() {
+        budget = (int)Math.min(MAX_BUDGET, Runtime.getRuntime().totalMemory() / 8);
+    }
+
+    /**
+     * Get rendered balloon of a status.
+     * @param id            Status id.
+     * @param theme         Current theme.
+     * @param width         Width of the balloon.
+     * @param textLines     Wrapped text of the status.
+     * @param infoText      Text below the balloon.
+     * @return Image or null if the balloon is not cached.
+     */
+    public Image get(long id, int theme, int width, String[] textLines, String infoText) {
+        Entry entry = (Entry)entries.get(new Long(id));
+        if(entry==null) {
+            return null;
+        }
+        if(entry.theme!=theme
+                || entry.image.getWidth()!=width
+                || entry.textLines!=textLines
+                || !entry.infoText.equals(infoText)) {
+            remove(entry);
+            return null;
+        }
+        moveToHead(entry);
+        return entry.image;
+    }
+
+    /**
+     * Create an image for a balloon and add it to the cache. Caller draws
+     * the balloon to the image.
+     * @return Image or null if there is not enough memory.
+     */
+    public Image create(long id, int theme, int width, int height,
+            String[] textLines, String infoText) {
+        int bytes = width * height * BYTES_PER_PIXEL;
+        if(bytes>budget / 4) {
+            return null;
+        }
+        Long key = new Long(id);
+        Entry old = (Entry)entries.get(key);
+        if(old!=null) {
+            remove(old);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        while(tail!=null && (usedBytes + bytes>budget
+                || runtime.freeMemory()<bytes + MIN_FREE_MEMORY)) {
+            remove(tail);
+        }
+        if(runtime.freeMemory()<bytes + MIN_FREE_MEMORY) {
+            return null;
+        }
+        Image image;
+        try {
+            image = Image.createImage(width, height);
+        } catch(OutOfMemoryError er) {
+            clear();
+            return null;
+        }
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.image = image;
+        entry.bytes = bytes;
+        entry.theme = theme;
+        entry.textLines = textLines;
+        entry.infoText = infoText;
+        entries.put(key, entry);
+        usedBytes += bytes;
+        moveToHead(entry);
+        return image;
+    }
+
+    /** Remove all balloons */
+    public void clear() {
+        entries.clear();
+        head = null;
+        tail = null;
+        usedBytes = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void moveToHead(Entry entry) {
+        if(head==entry) {
+            return;
+        }
+        unlink(entry);
+        entry.next = head;
+        if(head!=null) {
+            head.previous = entry;
+        }
+        head = entry;
+        if(tail==null) {
+            tail = entry;
+        }
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entries.remove(entry.key);
+        usedBytes -= entry.bytes;
+    }
+
+    private void unlink(Entry entry) {
+        if(entry.previous!=null) {
+            entry.previous.next = entry.next;
+        } else if(head==entry) {
+            head = entry.next;
+        }
+        if(entry.next!=null) {
+            entry.next.previous = entry.previous;
+        } else if(tail==entry) {
+            tail = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /** Cached balloon and the state it was drawn with */
+    private static class Entry {
+        Long key;
+        Image image;
+        int bytes;
+        int theme;
+        String[] textLines;
+        String infoText;
+        Entry previous;
+        Entry next;
+    }
+
+}
@@ -46,15 +46,19 @@ public class ComicTalkBalloon implements TalkBalloon {
         return textFont;
     }
 
+    public int getTextWidth() {
+        return screenWidth-fontHeight*2-fontHeight/2;
+    }
+
     public int draw(Graphics g, String text, String talkerText, int y) {
         String[] originalText = { text };
-        String[] textLines = StringUtil.formatMessage(originalText, screenWidth-textFont.getHeight()*2-textFont.getHeight()/2, textFont);
+        String[] textLines = StringUtil.formatMessage(originalText, getTextWidth(), textFont);
         return draw(g, textLines, talkerText, y, false);
     }
 
     public int draw(Graphics g, String text, String talkerText, int y, boolean isSelected) {
         String[] originalText = { text };
-        String[] textLines = StringUtil.formatMessage(originalText, screenWidth-textFont.getHeight()*2-textFont.getHeight()/2, textFont);
+        String[] textLines = StringUtil.formatMessage(originalText, getTextWidth(), textFont);
         return draw(g, textLines, talkerText, y, isSelected);
     }
 
@@ -124,10 +128,14 @@ public class ComicTalkBalloon implements TalkBalloon {
         g.setColor( Theme.COLOR_USER_TEXT );
         g.drawString(talkerText, x+16+triSize * 2 + 2, y + textHeight + 4 + fontHeight, Graphics.LEFT|Graphics.BOTTOM);
 
+        return getHeight(textLines.length);
+    }
+
+    public int getHeight(int lineCount) {
         int titleHeight = fontHeight + 1 ;
         if(titleHeight<23) { titleHeight = 23; }
 
-        return (int)((textLines.length)*fontHeight + fontHeight + titleHeight);
+        return lineCount*fontHeight + fontHeight + titleHeight;
     }
 
     public void setSize(int width, int height) {
@@ -20,6 +20,7 @@
 package com.substanceofcode.twitter.views;
 
 import com.substanceofcode.infrastructure.Device;
+import com.substanceofcode.tasks.AbstractTask;
 import com.substanceofcode.twitter.TwitterController;
 import com.substanceofcode.twitter.model.FileSelect;
 import java.io.IOException;
@@ -83,14 +84,13 @@ public class FileBrowserCanvas extends Canvas  {
     public void showRoots() {
         status = "Loading roots";
         repaint();
-        new Thread() {
-            public void run() {
-                super.run();
+        new AbstractTask() {
+            public void doTask() {
                 loadRoots();
                 status = "Roots loaded";
                 repaint();
             }
-        }.start();
+        }.execute();
     }
 
     protected void paint(Graphics g) {
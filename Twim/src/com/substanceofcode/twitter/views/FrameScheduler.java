@@ -0,0 +1,158 @@
+/*
+ * FrameScheduler.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.twitter.views;
+
+import com.substanceofcode.utils.Log;
+import javax.microedition.lcdui.Canvas;
+
+/**
+ * Paints a canvas at a limited frame rate. Repaint requests between two
+ * frames are coalesced into one paint, and a running animation is
+ * advanced before each frame. The achieved frame rate of every busy
+ * period, such as a drag or a fling, is written to the log.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class FrameScheduler implements Runnable {
+
+    /** Shortest time between two frames, 25 frames per second */
+    private static final int FRAME_MILLIS = 40;
+
+    private Canvas canvas;
+    private Animation animation;
+    /** Frame thread, created once and idle while the canvas is hidden */
+    private Thread thread;
+    private boolean isRunning;
+    private boolean isFrameRequested;
+    private boolean isAnimating;
+
+    /** Frames painted in the current busy period */
+    private int frames;
+    private long busyStartTime;
+    private int fps;
+
+    /**
+     * Creates a new instance of FrameScheduler
+     * @param canvas    Canvas to be painted.
+     * @param animation Animation advanced before each frame.
+     */
+    public FrameScheduler(Canvas canvas, Animation animation) {
+        this.canvas = canvas;
+        this.animation = animation;
+    }
+
+    /** Start painting frames, called when the canvas is shown */
+    public synchronized void start() {
+        isRunning = true;
+        if(thread==null) {
+            thread = new Thread(this);
+            thread.start();
+        }
+        notify();
+    }
+
+    /** Stop painting frames, called when the canvas is hidden */
+    public synchronized void stop() {
+        isRunning = false;
+        isAnimating = false;
+        notify();
+    }
+
+    /** Paint the canvas on the next frame */
+    public synchronized void requestFrame() {
+        isFrameRequested = true;
+        notify();
+    }
+
+    /** Advance the animation on every frame until it ends */
+    public synchronized void startAnimation() {
+        isAnimating = true;
+        notify();
+    }
+
+    public synchronized void stopAnimation() {
+        isAnimating = false;
+    }
+
+    public synchronized boolean isAnimating() {
+        return isAnimating;
+    }
+
+    /** Get frames per second achieved in the last busy period */
+    public synchronized int getFps() {
+        return fps;
+    }
+
+    public void run() {
+        long lastFrameTime = 0;
+        while(true) {
+            boolean isAnimationFrame;
+            synchronized(this) {
+                while(!isRunning || (!isFrameRequested && !isAnimating)) {
+                    endBusyPeriod(lastFrameTime);
+                    try {
+                        wait();
+                    } catch(InterruptedException ex) {
+                        Log.error("FrameScheduler.run: " + ex.getMessage());
+                    }
+                }
+                isFrameRequested = false;
+                isAnimationFrame = isAnimating;
+            }
+
+            /** Wait until the frame is due */
+            long now = System.currentTimeMillis();
+            long delay = lastFrameTime + FRAME_MILLIS - now;
+            if(delay>0) {
+                try {
+                    Thread.sleep(delay);
+                } catch(InterruptedException ex) {
+                    Log.error("FrameScheduler.run: " + ex.getMessage());
+                }
+                now = System.currentTimeMillis();
+            }
+
+            if(isAnimationFrame && !animation.step(now)) {
+                stopAnimation();
+            }
+            canvas.repaint();
+            canvas.serviceRepaints();
+
+            if(frames==0) {
+                busyStartTime = now;
+            }
+            frames++;
+            lastFrameTime = now;
+        }
+    }
+
+    /** Log the frame rate when the canvas has stopped changing */
+    private void endBusyPeriod(long lastFrameTime) {
+        if(frames>1) {
+            long duration = lastFrameTime - busyStartTime;
+            if(duration>0) {
+                fps = (int)((frames - 1) * 1000L / duration);
+                Log.debug("Frames: " + frames + ", " + fps + " fps");
+            }
+        }
+        frames = 0;
+    }
+
+}
@@ -34,15 +34,19 @@ public class ListTalkBalloon implements TalkBalloon {
         return textFont;
     }
 
+    public int getTextWidth() {
+        return screenWidth-fontHeight;
+    }
+
     public int draw(Graphics g, String text, String talkerText, int y) {
         String[] originalText = { text };
-        String[] textLines = StringUtil.formatMessage(originalText, screenWidth-textFont.getHeight(), textFont);
+        String[] textLines = StringUtil.formatMessage(originalText, getTextWidth(), textFont);
         return draw(g, textLines, talkerText, y, false);
     }
 
     public int draw(Graphics g, String text, String talkerText, int y, boolean isSelected) {
         String[] originalText = { text };
-        String[] textLines = StringUtil.formatMessage(originalText, screenWidth-textFont.getHeight(), textFont);
+        String[] textLines = StringUtil.formatMessage(originalText, getTextWidth(), textFont);
         return draw(g, textLines, talkerText, y, isSelected);
     }
 
@@ -89,7 +93,11 @@ public class ListTalkBalloon implements TalkBalloon {
         int nameWidth = nameFont.stringWidth(talkerText);
         g.drawString(talkerText, screenWidth - fontHeight/2 - nameWidth, textRow, Graphics.LEFT|Graphics.BOTTOM);
 
-        return (int)((textLines.length)*fontHeight + fontHeight*2);
+        return getHeight(textLines.length);
+    }
+
+    public int getHeight(int lineCount) {
+        return lineCount*fontHeight + fontHeight*2;
     }
 
     public void setSize(int width, int height) {
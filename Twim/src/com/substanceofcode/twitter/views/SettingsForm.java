@@ -65,12 +65,13 @@ public class SettingsForm extends Form implements CommandListener {
         passwordField = new TextField("Password", password, 32, TextField.PASSWORD);
         append(passwordField);
 
-        String[] labels = {"Save credentials", "Auto refresh", "Load tweets on startup", "Skip splash screen"};
+        String[] labels = {"Save credentials", "Auto refresh", "Load tweets on startup", "Skip splash screen", "Compact JSON feeds"};
         rememberValuesChoice = new ChoiceGroup("Options", ChoiceGroup.MULTIPLE, labels, null);
         boolean doRefresh = settings.getBooleanProperty(Settings.REFRESH, false);
         boolean loadOnStartup = settings.getBooleanProperty(Settings.LOAD_ON_STARTUP, false);
         boolean skipSplashScreen = settings.getBooleanProperty(Settings.SKIP_SPLASH_SCREEN, false);
-        rememberValuesChoice.setSelectedFlags(new boolean[]{true, doRefresh, loadOnStartup, skipSplashScreen});
+        boolean jsonFeeds = settings.getBooleanProperty(Settings.JSON_FEEDS, true);
+        rememberValuesChoice.setSelectedFlags(new boolean[]{true, doRefresh, loadOnStartup, skipSplashScreen, jsonFeeds});
         append(rememberValuesChoice);
 
         String[] themes = {"Default", "Gray", "Night"};
@@ -107,6 +108,8 @@ public class SettingsForm extends Form implements CommandListener {
             settings.setBooleanProperty(Settings.LOAD_ON_STARTUP, loadOnStartup);
             boolean skipSplashScreen = rememberValuesChoice.isSelected(3);
             settings.setBooleanProperty(Settings.SKIP_SPLASH_SCREEN, skipSplashScreen);
+            boolean jsonFeeds = rememberValuesChoice.isSelected(4);
+            settings.setBooleanProperty(Settings.JSON_FEEDS, jsonFeeds);
             if (rememberValuesChoice.isSelected(0)) {
                 /** Store username and password */
                 Log.debug("Remember");
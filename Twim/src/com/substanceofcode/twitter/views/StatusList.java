@@ -19,15 +19,22 @@
 
 package com.substanceofcode.twitter.views;
 
+import com.substanceofcode.twitter.TwitterApi;
 import com.substanceofcode.twitter.model.Status;
 import com.substanceofcode.utils.TimeUtil;
-import java.util.Enumeration;
 import java.util.Vector;
 import javax.microedition.lcdui.Font;
 import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
 
 /**
  * StatusList
+ *
+ * Positions of the statuses are kept in an index of running heights, so
+ * that painting and selection find the visible statuses with a binary
+ * search instead of walking the timeline from the start. The index is
+ * extended when statuses are appended and rebuilt when the timeline or
+ * the layout changes.
  * 
  * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
  */
@@ -41,7 +48,29 @@ public class StatusList {
     private static int screenHeight;
     private static TalkBalloon talkBalloon;
     private Status selectedStatus;
-    private static Status nextPageStatus = new Status("Twim", "Click to load next page...", null, "page");
+    /** Rendered balloons of statuses that are not selected */
+    private BalloonCache balloonCache = new BalloonCache();
+    /** Position of the selected status on screen when it was drawn */
+    private int selectedTop;
+    private int selectedHeight;
+    private static Status nextPageStatus = new Status("Twim", "Click to load next page...");
+
+    /** Width of the scroll bar */
+    private static final int SCROLL_BAR_WIDTH = 3;
+
+    /** Index of positions, tops[i] is the top of status i in the list */
+    private Vector indexedStatuses;
+    private int indexedCount;
+    private int[] tops = new int[64];
+    /** First and last indexed status to detect changes of the timeline */
+    private Object firstIndexed;
+    private Object lastIndexed;
+    /** Layout that the index was built with */
+    private TalkBalloon indexedBalloon;
+    private int indexedTextWidth;
+    private Font indexedFont;
+    /** Height of the list including the next page link */
+    private int listHeight;
     
     /** 
      * Creates a new instance of StatusList
@@ -56,7 +85,6 @@ public class StatusList {
         } else {
             talkBalloon = new ComicTalkBalloon(screenWidth, screenHeight);
         }
-        nextPageStatus.createTextLines(width, talkBalloon.getFont());
     }
 
     public static void setTalkBalloon(TalkBalloon themeBalloon) {
@@ -76,72 +104,201 @@ public class StatusList {
             int row,
             boolean drawSelectBox,
             boolean drawNextPageLink) {
+        selectedStatus = null;
         if(stats==null) {
             return;
         }
-        Enumeration statusEnum = stats.elements();
-        
-        int currentRow = row;
-        selectedStatus = null;
-        boolean isSelected;
-        int currentStatusIndex = 0;
-        while(statusEnum.hasMoreElements()) {
-            Status status = (Status)statusEnum.nextElement();
-            //System.out.println("Status: " + status.getText());
-            int statusHeight = status.getHeight();
-
-            if(status.getTextLines()==null) {
-                status.createTextLines(screenWidth-textFont.getHeight()*2-textFont.getHeight()/2, textFont);
-            }
+        updateIndex(stats, drawNextPageLink);
+        int count = indexedCount;
 
-            isSelected = false;
-            if(currentRow - (textFont.getHeight()+2)>=0 && selectedStatus==null && drawSelectBox==true) {
-                selectedStatus = status;
-                isSelected = true;
+        /** Statuses above the selection line are not selectable */
+        int selectIndex = -1;
+        if(drawSelectBox) {
+            selectIndex = findFirst(textFont.getHeight() + 2 - row, 0);
+            if(selectIndex<count) {
+                selectedStatus = (Status)stats.elementAt(selectIndex);
+                selectedTop = row + tops[selectIndex];
+                selectedHeight = tops[selectIndex + 1] - tops[selectIndex];
             }
+        }
 
-            if( statusHeight==0 ||
-               (statusHeight>0 && (currentRow+statusHeight)>0) ) {
-                /** Draw status only when it is visible */
-                statusHeight = drawStatus(g, currentRow, status, isSelected);
-                status.setHeight( statusHeight );
-            }
-            currentRow += statusHeight;
-            if(currentRow>screenHeight) {
+        /** Draw status only when it is inside the clip area */
+        int clipTop = g.getClipY();
+        int clipBottom = Math.min(clipTop + g.getClipHeight(), screenHeight);
+        for(int index=findFirst(clipTop - row - 1, 1); index<count; index++) {
+            int statusRow = row + tops[index];
+            if(statusRow>clipBottom) {
                 break;
             }
-            currentStatusIndex++;
+            Status status = (Status)stats.elementAt(index);
+            drawStatus(g, statusRow, status, index==selectIndex);
         }
 
-        System.out.println("current status index " + currentStatusIndex);
-
         /** Draw "Load next page..." link */
-        if(drawNextPageLink && currentStatusIndex%20==0) {
-            isSelected = false;
-            if(currentRow - (textFont.getHeight()+2)>=0 && selectedStatus==null && drawSelectBox==true) {
+        int linkRow = row + tops[count];
+        if(listHeight>tops[count]) {
+            boolean isSelected = false;
+            if(drawSelectBox && selectedStatus==null
+                    && linkRow - (textFont.getHeight()+2)>=0) {
                 selectedStatus = nextPageStatus;
+                selectedTop = linkRow;
+                selectedHeight = listHeight - tops[count];
                 isSelected = true;
             }
-            drawStatus(g, currentRow, nextPageStatus, isSelected);
+            if(linkRow<=clipBottom && linkRow + listHeight - tops[count]>=clipTop) {
+                drawStatus(g, linkRow, nextPageStatus, isSelected);
+            }
+        }
+    }
+
+    /**
+     * Find the first status whose top (or bottom) is at or below given
+     * position in the list.
+     * @param position  Position relative to the top of the list.
+     * @param bottom    1 to compare bottoms of statuses, 0 to compare tops.
+     * @return Index of the status or the number of statuses if none.
+     */
+    private int findFirst(int position, int bottom) {
+        int low = 0;
+        int high = indexedCount;
+        while(low<high) {
+            int middle = (low + high) >>> 1;
+            if(tops[middle + bottom]<position + bottom) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Bring the index up to date with the timeline and the layout */
+    private void updateIndex(Vector stats, boolean drawNextPageLink) {
+        int size = stats.size();
+        boolean isAppended = stats==indexedStatuses
+                && talkBalloon==indexedBalloon
+                && talkBalloon.getTextWidth()==indexedTextWidth
+                && talkBalloon.getFont()==indexedFont
+                && size>=indexedCount
+                && (indexedCount==0 || (stats.elementAt(0)==firstIndexed
+                    && stats.elementAt(indexedCount - 1)==lastIndexed));
+        if(!isAppended) {
+            indexedStatuses = stats;
+            indexedBalloon = talkBalloon;
+            indexedTextWidth = talkBalloon.getTextWidth();
+            indexedFont = talkBalloon.getFont();
+            indexedCount = 0;
+        }
+        if(tops.length<size + 1) {
+            int[] grown = new int[size + 32];
+            System.arraycopy(tops, 0, grown, 0, indexedCount + 1);
+            tops = grown;
+        }
+        tops[0] = 0;
+        for(int index=indexedCount; index<size; index++) {
+            tops[index + 1] = tops[index] + getHeight((Status)stats.elementAt(index));
+        }
+        indexedCount = size;
+        if(size>0) {
+            firstIndexed = stats.elementAt(0);
+            lastIndexed = stats.elementAt(size - 1);
+        }
+        listHeight = tops[size];
+        if(hasNextPageLink(stats, drawNextPageLink)) {
+            listHeight += getHeight(nextPageStatus);
         }
     }
+
+    /** Get height of status, wrapping the text if layout has changed */
+    private int getHeight(Status status) {
+        String[] textLines = status.getTextLines(
+                talkBalloon.getTextWidth(), talkBalloon.getFont());
+        return talkBalloon.getHeight(textLines.length);
+    }
     
     private int drawStatus(Graphics g, int row, Status status, boolean isSelected) {
-        /** Parse the text below the talk balloon */
-        String infoText;
-        if( status.getDate()!=null ) {
-            String time = TimeUtil.getTimeInterval(status.getDate());
-            infoText = status.getScreenName() + ", " + time + " ago";
-        } else {
-            infoText = status.getScreenName();
+        /** Text below the talk balloon */
+        String infoText = status.getInfoText(TimeUtil.getMinute());
+        String[] textLines = status.getTextLines(
+                talkBalloon.getTextWidth(), talkBalloon.getFont());
+
+        /**
+         * Selected balloon is drawn directly since its border reaches
+         * outside the balloon.
+         */
+        long id = status.getId();
+        if(!isSelected && id>0) {
+            int theme = Theme.getTheme();
+            Image image = balloonCache.get(id, theme, screenWidth, textLines, infoText);
+            if(image==null) {
+                int height = getHeight(status);
+                image = balloonCache.create(
+                        id, theme, screenWidth, height, textLines, infoText);
+                if(image!=null) {
+                    Graphics imageGraphics = image.getGraphics();
+                    imageGraphics.setColor(Theme.COLOR_BACKGROUND);
+                    imageGraphics.fillRect(0, 0, screenWidth, height);
+                    talkBalloon.draw(imageGraphics, textLines, infoText, 0, false);
+                }
+            }
+            if(image!=null) {
+                g.drawImage(image, 0, row, Graphics.LEFT|Graphics.TOP);
+                return image.getHeight();
+            }
+        }
+        return talkBalloon.draw(g, textLines, infoText, row, isSelected);
+    }
+
+    /**
+     * Draw scroll bar that shows the position of the view in the list.
+     * @param top       Top of the view on screen.
+     * @param bottom    Bottom of the view on screen.
+     * @param offset    Scrolled distance from the top of the list.
+     */
+    public void drawScrollBar(Graphics g, int top, int bottom, int offset) {
+        int viewHeight = bottom - top;
+        if(listHeight<=viewHeight || viewHeight<=0) {
+            return;
         }
-        return talkBalloon.draw(g, status.getText(), infoText, row, isSelected);
+        int thumbHeight = Math.max(viewHeight * viewHeight / listHeight, SCROLL_BAR_WIDTH * 2);
+        int thumbTop = top + (int)((long)offset * (viewHeight - thumbHeight)
+                / (listHeight - viewHeight));
+        thumbTop = Math.max(top, Math.min(thumbTop, bottom - thumbHeight));
+        g.setColor(Theme.COLOR_USER_TEXT);
+        g.fillRect(screenWidth - SCROLL_BAR_WIDTH, thumbTop, SCROLL_BAR_WIDTH, thumbHeight);
+    }
+
+    /** Get height of the list as it was last drawn */
+    public int getListHeight() {
+        return listHeight;
+    }
+
+    /**
+     * Check if the "Load next page..." link is shown after given statuses.
+     * Only full pages may have a next page.
+     */
+    public boolean hasNextPageLink(Vector stats, boolean drawNextPageLink) {
+        return drawNextPageLink && stats.size()%TwitterApi.PAGE_SIZE==0;
+    }
+
+    /** Check if status is the "Load next page..." link */
+    public boolean isNextPageLink(Status status) {
+        return status==nextPageStatus;
     }
 
     public Status getSelected() {
         return selectedStatus;
     }
 
+    /** Get top of the selected status on screen when it was drawn */
+    public int getSelectedTop() {
+        return selectedTop;
+    }
+
+    public int getSelectedHeight() {
+        return selectedHeight;
+    }
+
     void setSize(int width, int height) {
         this.screenWidth = width;
         this.screenHeight = height;
@@ -69,6 +69,10 @@ public class TabBar {
         return selectedTabIndex;
     }
 
+    public int getActiveTabIndex() {
+        return activeTabIndex;
+    }
+
     public boolean isSelectedActive() {
         return (activeTabIndex==selectedTabIndex);
     }
@@ -77,6 +81,12 @@ public class TabBar {
         activeTabIndex = selectedTabIndex;
     }
 
+    /** Select and activate given tab */
+    public void activateTab(int tabIndex) {
+        selectedTabIndex = tabIndex;
+        activeTabIndex = tabIndex;
+    }
+
     public void selectNothing() {
         selectedTabIndex = -1;
     }
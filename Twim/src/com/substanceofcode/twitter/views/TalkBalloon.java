@@ -43,6 +43,12 @@ public interface TalkBalloon {
 
     public Font getFont();
 
+    /** Get width that the text inside balloon is wrapped to */
+    public int getTextWidth();
+
+    /** Get height of a balloon with given number of text lines */
+    public int getHeight(int lineCount);
+
     public void setSize(int width, int height);
 
 }
@@ -23,12 +23,12 @@ import com.substanceofcode.infrastructure.Device;
 import com.substanceofcode.twitter.TwitterController;
 import com.substanceofcode.twitter.model.Status;
 import com.substanceofcode.utils.Log;
-import java.util.Calendar;
-import java.util.Enumeration;
+import com.substanceofcode.utils.TimeUtil;
 import java.util.Vector;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Font;
 import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
 import javax.microedition.lcdui.game.GameCanvas;
 
 /**
@@ -36,17 +36,23 @@ import javax.microedition.lcdui.game.GameCanvas;
  * 
  * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
  */
-public class TimelineCanvas extends Canvas {
+public class TimelineCanvas extends Canvas implements Animation {
 
     private TwitterController controller;
     private Vector statuses;
     private StatusList statusList;
     private boolean drawNextPageLink;
     private TabBar menuBar;
+    /** Timeline on screen before a request, restored if it is cancelled */
+    private Vector shownStatuses;
+    private int shownTabIndex;
+    private boolean shownNextPageLink;
     private Menu menu;
     private Menu statusMenu;
     private Menu mediaSourceMenu;
     private int verticalScroll;
+    /** Scroll position of the frame being painted */
+    private int paintScroll;
     private Point pointerPressedPoint = new Point(0, 0);
     private int lastY; /** Last touch coordinates */
     private int screenWidth; /** Screen width to identify the screen rotation */
@@ -55,6 +61,39 @@ public class TimelineCanvas extends Canvas {
     private static final Font LABEL_FONT = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_MEDIUM);
     private static final int HOME_TAB = 3;
     private static final int RETWEETS_OF_ME_TAB = 2;
+
+    /** Last drawn frame of the status list */
+    private Image backBuffer;
+    private Graphics backGraphics;
+    private boolean isBackBufferEnabled = true;
+    private boolean isBackBufferValid;
+    /** State of the list when the back buffer was drawn */
+    private int bufferedScroll;
+    private Vector bufferedStatuses;
+    private int bufferedSize;
+    private Object bufferedFirst;
+    private boolean bufferedSelectionBox;
+    private boolean bufferedNextPageLink;
+    private int bufferedTheme;
+    private long bufferedMinute;
+
+    /** Paints drags and flings at most once per frame */
+    private FrameScheduler scheduler;
+    /**
+     * Guards the scroll position and the fling, which are changed both by
+     * the event thread and the frame thread.
+     */
+    private final Object scrollLock = new Object();
+    /** Speed of the drag or fling in pixels per second */
+    private int velocity;
+    private int velocityRemainder;
+    private long lastMoveTime;
+    /** Ignore drags that were stopped before release */
+    private static final int MAX_FLING_DELAY = 100;
+    private static final int MIN_FLING_VELOCITY = 200;
+    private static final int MAX_FLING_VELOCITY = 4000;
+    /** Slowdown of fling in pixels per second per second */
+    private static final int FLING_DECELERATION = 1500;
     
     /** 
      * Creates a new instance of TimelineCanvas
@@ -119,34 +158,177 @@ public class TimelineCanvas extends Canvas {
         
         verticalScroll = 0;
         screenWidth = getWidth();
+        scheduler = new FrameScheduler(this, this);
     }
 
     public void showDrawNextPageLink(boolean show) {
         drawNextPageLink = show;
+        isBackBufferValid = false;
     }
 
     public void resetMenus() {
         menu.deactivate();
         statusMenu.deactivate();
         mediaSourceMenu.deactivate();
+        isBackBufferValid = false;
     }
 
     public void resetScrolling() {
-        verticalScroll = 0;
+        scrollTo(0);
+        isBackBufferValid = false;
+    }
+
+    /**
+     * Enable or disable drawing through the back buffer. Without it the
+     * whole list is drawn on every repaint.
+     */
+    public void setBackBufferEnabled(boolean enabled) {
+        isBackBufferEnabled = enabled;
+        if(!enabled) {
+            backBuffer = null;
+            backGraphics = null;
+        }
+        isBackBufferValid = false;
+    }
+
+    protected void showNotify() {
+        /** Statuses may have changed while we were hidden */
+        isBackBufferValid = false;
+        saveShownTimeline();
+        scheduler.start();
+    }
+
+    protected void hideNotify() {
+        scheduler.stop();
+    }
+
+    /**
+     * Advance the fling. The list slows down at constant rate and stops
+     * at the top and the bottom of the list.
+     * @param time  Current time in milliseconds.
+     * @return true if the list is still moving.
+     */
+    public boolean step(long time) {
+        int bottom = Math.min(0, getListBottom() - getListTop() - statusList.getListHeight());
+        synchronized(scrollLock) {
+            int elapsed = (int)(time - lastMoveTime);
+            lastMoveTime = time;
+            if(elapsed<=0) {
+                return velocity!=0;
+            }
+            int distance = velocity * elapsed + velocityRemainder;
+            velocityRemainder = distance % 1000;
+            verticalScroll += distance / 1000;
+
+            int slowdown = FLING_DECELERATION * elapsed / 1000;
+            if(velocity>0) {
+                velocity = Math.max(0, velocity - slowdown);
+            } else {
+                velocity = Math.min(0, velocity + slowdown);
+            }
+
+            if(verticalScroll>0) {
+                verticalScroll = 0;
+                velocity = 0;
+            } else if(verticalScroll<bottom) {
+                verticalScroll = bottom;
+                velocity = 0;
+            }
+            return velocity!=0;
+        }
+    }
+
+    /** Start fling with the speed of the drag */
+    private void startFling(long time) {
+        synchronized(scrollLock) {
+            if(time - lastMoveTime>MAX_FLING_DELAY
+                    || Math.abs(velocity)<MIN_FLING_VELOCITY) {
+                velocity = 0;
+                return;
+            }
+            velocity = Math.max(-MAX_FLING_VELOCITY, Math.min(velocity, MAX_FLING_VELOCITY));
+            velocityRemainder = 0;
+            lastMoveTime = time;
+        }
+        scheduler.startAnimation();
+    }
+
+    /** Stop the fling, eg. when the list is touched */
+    private void stopFling() {
+        synchronized(scrollLock) {
+            velocity = 0;
+            lastMoveTime = System.currentTimeMillis();
+        }
+        scheduler.stopAnimation();
+    }
+
+    /** Move the list by a drag */
+    private void scrollBy(int dy, long time) {
+        synchronized(scrollLock) {
+            verticalScroll += dy;
+            /** Follow speed of the drag, smoothing out uneven pointer events */
+            int elapsed = (int)(time - lastMoveTime);
+            if(elapsed>0) {
+                velocity = (velocity + 3 * (dy * 1000 / elapsed)) / 4;
+                lastMoveTime = time;
+            }
+        }
+    }
+
+    /** Stop the fling and move the list to given position */
+    private void scrollTo(int scroll) {
+        synchronized(scrollLock) {
+            velocity = 0;
+            verticalScroll = scroll;
+        }
+        scheduler.stopAnimation();
+    }
+
+    /** Get statuses that are shown */
+    public Vector getTimeline() {
+        return statuses;
     }
 
     public void setTimeline(Vector friendsTimeline) {
         if(friendsTimeline.isEmpty()) {
             this.statuses = new Vector();
             this.statuses.addElement(
-                new Status("Twim", "Sorry... No statuses to display",
-                    Calendar.getInstance().getTime(), "")
+                new Status("Twim", "Sorry... No statuses to display")
             );
         }
         this.statuses = friendsTimeline;
+        isBackBufferValid = false;
+        if(isShown()) {
+            saveShownTimeline();
+        }
+    }
+
+    /** Remember the timeline on screen */
+    private void saveShownTimeline() {
+        shownStatuses = statuses;
+        shownTabIndex = menuBar.getActiveTabIndex();
+        shownNextPageLink = drawNextPageLink;
+        controller.timelineShown();
+    }
+
+    /**
+     * Return to the timeline that was on screen before a request changed
+     * the tab or the next page link.
+     */
+    public void restoreShownTimeline() {
+        if(shownStatuses==null) {
+            return;
+        }
+        statuses = shownStatuses;
+        menuBar.activateTab(shownTabIndex);
+        drawNextPageLink = shownNextPageLink;
+        isBackBufferValid = false;
     }
 
     public void paint(Graphics g) {
+        synchronized(scrollLock) {
+            paintScroll = verticalScroll;
+        }
         /** Check for screen rotation change */
         if(screenWidth != getWidth()) {
             menu.setSize(getWidth(), getHeight());
@@ -154,46 +336,166 @@ public class TimelineCanvas extends Canvas {
             mediaSourceMenu.setSize(getWidth(), getHeight());
             statusList.setSize(getWidth(),getHeight());
             screenWidth = getWidth();
-            if(statuses!=null) {
-                Enumeration en = statuses.elements();
-                while(en.hasMoreElements()) {
-                    Status status = (Status)en.nextElement();
-                    status.clearTextLines();
-                }
-            }
+            isBackBufferValid = false;
         }
 
-        g.setColor(Theme.COLOR_BACKGROUND);
-        g.fillRect(0, 0, getWidth(), getHeight());
-
         if( menu.isActive()==false &&
                 statusMenu.isActive()==false &&
                 mediaSourceMenu.isActive()==false) {
             boolean drawSelectionBox = menuBar.isSelectedActive();
-            statusList.draw(
-                    g, statuses,
-                    menuBar.getHeight() + verticalScroll + Theme.FONT_TEXT.getHeight()/2,
-                    drawSelectionBox,
-                    drawNextPageLink);
+            if(updateBackBuffer(drawSelectionBox)) {
+                g.drawImage(backBuffer, 0, 0, Graphics.LEFT|Graphics.TOP);
+            } else {
+                g.setColor(Theme.COLOR_BACKGROUND);
+                g.fillRect(0, 0, getWidth(), getHeight());
+                drawList(g, drawSelectionBox);
+            }
+            statusList.drawScrollBar(g, getListTop(), getListBottom(), -paintScroll);
             menuBar.draw(g, 0, getWidth());
             if(Device.isTouch()) {
                 drawMenuButton(g);
             }
 
 
-        } else if(menu.isActive()) {
-            menu.draw(g);
-        } else if(statusMenu.isActive()) {
-            statusMenu.draw(g);
-        } else if(mediaSourceMenu.isActive()) {
-            mediaSourceMenu.draw(g);
+        } else {
+            /** Menu actions may change the list under the menu */
+            isBackBufferValid = false;
+            g.setColor(Theme.COLOR_BACKGROUND);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if(menu.isActive()) {
+                menu.draw(g);
+            } else if(statusMenu.isActive()) {
+                statusMenu.draw(g);
+            } else if(mediaSourceMenu.isActive()) {
+                mediaSourceMenu.draw(g);
+            }
         }
 
         //g.drawString(debug, 0, 40, Graphics.LEFT|Graphics.BOTTOM);
     }
 
+    /**
+     * Bring the back buffer up to date with the list. When only the scroll
+     * position has changed the last frame is shifted and just the exposed
+     * strip and the old and new selection are drawn.
+     * @return false if the back buffer is not in use.
+     */
+    private boolean updateBackBuffer(boolean drawSelectionBox) {
+        int width = getWidth();
+        int height = getHeight();
+        if(!isBackBufferEnabled) {
+            return false;
+        }
+        if(backBuffer==null
+                || backBuffer.getWidth()!=width
+                || backBuffer.getHeight()!=height) {
+            backBuffer = null;
+            backGraphics = null;
+            try {
+                backBuffer = Image.createImage(width, height);
+                backGraphics = backBuffer.getGraphics();
+            } catch(OutOfMemoryError er) {
+                /** Not enough memory for the buffer, draw directly */
+                Log.error("No memory for back buffer");
+                isBackBufferEnabled = false;
+                backBuffer = null;
+                backGraphics = null;
+                return false;
+            }
+            isBackBufferValid = false;
+        }
+
+        int size = (statuses==null ? 0 : statuses.size());
+        Object first = (size>0 ? statuses.elementAt(0) : null);
+        int dy = paintScroll - bufferedScroll;
+        /** Labels showing the age of statuses change once a minute */
+        long minute = TimeUtil.getMinute();
+        boolean isShiftable = isBackBufferValid
+                && statuses==bufferedStatuses
+                && size==bufferedSize
+                && first==bufferedFirst
+                && drawSelectionBox==bufferedSelectionBox
+                && drawNextPageLink==bufferedNextPageLink
+                && Theme.getTheme()==bufferedTheme
+                && minute==bufferedMinute
+                && Math.abs(dy)<height;
+
+        if(!isShiftable) {
+            drawBufferStrip(0, height, drawSelectionBox);
+        } else if(dy!=0) {
+            Status oldSelected = statusList.getSelected();
+            int oldTop = statusList.getSelectedTop() + dy;
+            int oldHeight = statusList.getSelectedHeight();
+
+            /** Move the surviving part and draw the exposed strip */
+            backGraphics.setClip(0, 0, width, height);
+            if(dy>0) {
+                backGraphics.copyArea(0, 0, width, height - dy, 0, dy,
+                        Graphics.LEFT|Graphics.TOP);
+                drawBufferStrip(0, dy, drawSelectionBox);
+            } else {
+                backGraphics.copyArea(0, -dy, width, height + dy, 0, 0,
+                        Graphics.LEFT|Graphics.TOP);
+                drawBufferStrip(height + dy, -dy, drawSelectionBox);
+            }
+
+            /** Selection box follows the selection line, not the list */
+            Status newSelected = statusList.getSelected();
+            if(newSelected!=oldSelected) {
+                int newTop = statusList.getSelectedTop();
+                int newHeight = statusList.getSelectedHeight();
+                if(oldSelected!=null) {
+                    drawBufferStrip(oldTop - 1, oldHeight + 2, drawSelectionBox);
+                }
+                if(newSelected!=null) {
+                    drawBufferStrip(newTop - 1, newHeight + 2, drawSelectionBox);
+                }
+            }
+        }
+
+        isBackBufferValid = true;
+        bufferedScroll = paintScroll;
+        bufferedStatuses = statuses;
+        bufferedSize = size;
+        bufferedFirst = first;
+        bufferedSelectionBox = drawSelectionBox;
+        bufferedNextPageLink = drawNextPageLink;
+        bufferedTheme = Theme.getTheme();
+        bufferedMinute = minute;
+        return true;
+    }
+
+    /** Draw the statuses between given rows of the back buffer */
+    private void drawBufferStrip(int top, int height, boolean drawSelectionBox) {
+        backGraphics.setClip(0, top, getWidth(), height);
+        backGraphics.setColor(Theme.COLOR_BACKGROUND);
+        backGraphics.fillRect(0, top, getWidth(), height);
+        drawList(backGraphics, drawSelectionBox);
+        backGraphics.setClip(0, 0, getWidth(), getHeight());
+    }
+
+    private void drawList(Graphics g, boolean drawSelectionBox) {
+        statusList.draw(
+                g, statuses,
+                menuBar.getHeight() + paintScroll + Theme.FONT_TEXT.getHeight()/2,
+                drawSelectionBox,
+                drawNextPageLink);
+    }
+
+    /**
+     * Repaint the tab bar after the tab selection has moved. The list needs
+     * repainting only when it gains or loses its selection box.
+     */
+    private void repaintTabs(boolean wasSelectedActive) {
+        if(menuBar.isSelectedActive()==wasSelectedActive) {
+            repaint(0, 0, getWidth(), menuBar.getHeight() + 1);
+        } else {
+            repaint();
+        }
+    }
+
     private void handleTabChange() {
-        verticalScroll = 0;
+        scrollTo(0);
         int tabIndex = menuBar.getSelectedTabIndex();
         if(tabIndex==0) {
             /** Archive selected */
@@ -225,7 +527,7 @@ public class TimelineCanvas extends Canvas {
     /** Handle repeated key presses. */
     protected void keyRepeated(int keyCode) {
         handleUpAndDownKeys(keyCode);
-        repaint();
+        scheduler.requestFrame();
     }
 
     private void handleUpAndDownKeys(int keyCode) {
@@ -240,10 +542,9 @@ public class TimelineCanvas extends Canvas {
             } else if(mediaSourceMenu.isActive()) {
                 mediaSourceMenu.selectPrevious();
             } else {
-                verticalScroll += getHeight()/6;
-                if(verticalScroll>0) {
-                    verticalScroll = 0;
-                }            
+                synchronized(scrollLock) {
+                    verticalScroll = Math.min(0, verticalScroll + getHeight()/6);
+                }
             }
         } else if(gameAction == GameCanvas.DOWN) {
             menuBar.resetSelectedTab();
@@ -254,7 +555,9 @@ public class TimelineCanvas extends Canvas {
             } else if(mediaSourceMenu.isActive()) {
                 mediaSourceMenu.selectNext();
             } else {
-                verticalScroll -= getHeight()/6; 
+                synchronized(scrollLock) {
+                    verticalScroll -= getHeight()/6;
+                }
             }
         }        
     }
@@ -357,18 +660,21 @@ public class TimelineCanvas extends Canvas {
     }
     
     public void keyPressed(int keyCode) {
+        stopFling();
         int gameAction = this.getGameAction(keyCode);
         String keyName = this.getKeyName(keyCode);
         Log.debug("key: " + keyName);
         if(gameAction == Canvas.LEFT) {
+            boolean wasSelectedActive = menuBar.isSelectedActive();
             menuBar.selectPreviousTab();
             //handleTabChange();
-            repaint();
+            repaintTabs(wasSelectedActive);
             return;
         } else if(gameAction == Canvas.RIGHT) {
+            boolean wasSelectedActive = menuBar.isSelectedActive();
             menuBar.selectNextTab();
             //handleTabChange();
-            repaint();
+            repaintTabs(wasSelectedActive);
             return;
         } else if(gameAction == Canvas.FIRE ||
                 keyName.toUpperCase().startsWith("ENTER") ||
@@ -396,7 +702,7 @@ public class TimelineCanvas extends Canvas {
                 return;
             } else if(statusList.getSelected()!=null){
                 Status selectedStatus = statusList.getSelected();
-                if(selectedStatus.getId().equals("page")) {
+                if(statusList.isNextPageLink(selectedStatus)) {
                     loadNextPage();
                     return;
                 }
@@ -429,6 +735,22 @@ public class TimelineCanvas extends Canvas {
             } else {
                 menu.activate();
             }
+        } else if(isJumpKey(keyCode) && !menu.isActive()
+                && !statusMenu.isActive() && !mediaSourceMenu.isActive()) {
+            if(keyCode==Canvas.KEY_NUM1) {
+                /** Jump to top */
+                scrollTo(0);
+            } else if(keyCode==Canvas.KEY_NUM7) {
+                /** Jump to bottom */
+                int listHeight = statusList.getListHeight();
+                scrollTo(Math.min(0, getListBottom() - getListTop() - listHeight));
+            } else if(statuses!=null
+                    && statusList.hasNextPageLink(statuses, drawNextPageLink)) {
+                loadNextPage();
+                return;
+            }
+            repaint();
+            return;
         } else if( (keyName.indexOf("SOFT")>=0 && keyName.indexOf("2")>0) ||
             (Device.isNokia() && keyCode==-7) ||
             keyCode == TimelineCanvas.KEY_POUND ||
@@ -465,6 +787,8 @@ public class TimelineCanvas extends Canvas {
         } else if(mediaSourceMenu.isActive()) {
             mediaSourceMenu.selectWithPointer(x, y, true);
         } else {
+            /** Touch stops the fling */
+            stopFling();
             pointerPressedPoint.x = x;
             pointerPressedPoint.y = y;
             lastY = y;
@@ -503,13 +827,13 @@ public class TimelineCanvas extends Canvas {
                 pointerPressedPoint.y = y;
             } else {
                 if(lastY>0) {
-                    int dy = y - lastY;
-                    verticalScroll += dy;
+                    scrollBy(y - lastY, System.currentTimeMillis());
                     lastY = y;
                 }
             }
         }
-        repaint();
+        /** Pointer events may come faster than frames can be painted */
+        scheduler.requestFrame();
     }
 
     /**
@@ -547,13 +871,37 @@ public class TimelineCanvas extends Canvas {
             }
             if(lastY>0) {
                 int dy = y - lastY;
-                verticalScroll += dy;
+                long now = System.currentTimeMillis();
+                if(dy!=0) {
+                    scrollBy(dy, now);
+                }
                 lastY = y;
+                startFling(now);
             }
         }
         repaint();
     }
 
+    /** Keys 1, 7 and 9 jump to top, bottom and next page */
+    private static boolean isJumpKey(int keyCode) {
+        return keyCode==Canvas.KEY_NUM1
+                || keyCode==Canvas.KEY_NUM7
+                || keyCode==Canvas.KEY_NUM9;
+    }
+
+    /** Get top of the first status when the list is not scrolled */
+    private int getListTop() {
+        return menuBar.getHeight() + Theme.FONT_TEXT.getHeight()/2;
+    }
+
+    /** Get bottom of the area where statuses are visible */
+    private int getListBottom() {
+        if(Device.isTouch()) {
+            return getHeight() - boxHeight;
+        }
+        return getHeight();
+    }
+
     private void drawMenuButton(Graphics g) {
         g.setFont(LABEL_FONT);
         int wi = LABEL_FONT.stringWidth("Menu");
@@ -583,7 +931,7 @@ public class TimelineCanvas extends Canvas {
         menuBar.selectTab( HOME_TAB );
         menuBar.activateSelectedTab();
         if(resetVerticalScroll) {
-            verticalScroll = 0;
+            scrollTo(0);
         }
     }
 
@@ -591,7 +939,7 @@ public class TimelineCanvas extends Canvas {
         menuBar.selectTab( RETWEETS_OF_ME_TAB );
         menuBar.activateSelectedTab();
         if(resetVerticalScroll) {
-            verticalScroll = 0;
+            scrollTo(0);
         }
     }
     
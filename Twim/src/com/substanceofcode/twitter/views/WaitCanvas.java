@@ -19,10 +19,15 @@
 
 package com.substanceofcode.twitter.views;
 
+import com.substanceofcode.infrastructure.Device;
 import com.substanceofcode.tasks.AbstractTask;
+import com.substanceofcode.tasks.TaskExecutor;
+import com.substanceofcode.tasks.TaskFuture;
+import com.substanceofcode.tasks.TaskProgress;
 import com.substanceofcode.twitter.TwitterController;
 import com.substanceofcode.utils.ImageUtil;
-import com.substanceofcode.utils.Log;
+import com.substanceofcode.utils.StringUtil;
+import java.util.TimerTask;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Displayable;
 import javax.microedition.lcdui.Font;
@@ -33,22 +38,30 @@ import javax.microedition.lcdui.Image;
  *
  * @author Tommi
  */
-public class WaitCanvas extends Canvas implements Runnable {
+public class WaitCanvas extends Canvas {
     
     private TwitterController controller;
     private String waitText = "Please wait...";
     private Displayable nextScreen;
     private AbstractTask task;
-    private Thread thread;
+    private TaskFuture future;
+    private TaskProgress progress;
     private Font statusFont;
     private int loadingImageIndex;
     private TalkBalloon talkBalloon;
+    /** Wait text wrapped to the balloon */
+    private String[] waitLines;
+    /** Transfer counters, updated twice a second */
+    private String progressText = "";
+    private int cancelBoxHeight;
     
     private final Font titleFont = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_BOLD, Font.SIZE_MEDIUM);
+    private static final String CANCEL_LABEL = "Cancel";
      
         
     public void setWaitText(String text) {
         waitText = text;
+        waitLines = null;
     }
     
     /** Creates a new instance of WaitCanvas 
@@ -63,8 +76,10 @@ public class WaitCanvas extends Canvas implements Runnable {
         this.talkBalloon = new ComicTalkBalloon(getWidth(), getHeight());
         loadingImageIndex = 0;
         statusFont = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_BOLD, Font.SIZE_SMALL);
-        thread = new Thread(this);
-        thread.start();           
+        future = task.execute();
+        /** Identical request may already be running in another task */
+        progress = future.getTask().getProgress();
+        TaskExecutor.getInstance().getTimer().schedule(new ProgressTimerTask(), 500, 500);
     }
     
     protected void paint(Graphics g) {  
@@ -72,22 +87,82 @@ public class WaitCanvas extends Canvas implements Runnable {
         g.setColor( Theme.COLOR_BACKGROUND );
         g.fillRect( 0, 0, getWidth(), getHeight() );
         
+        if(waitLines==null) {
+            String[] text = { waitText };
+            waitLines = StringUtil.formatMessage(
+                    text, talkBalloon.getTextWidth(), talkBalloon.getFont());
+        }
         int titleY = getHeight()/4;
-        talkBalloon.draw(g, waitText, "Twim", titleY);
+        int balloonHeight = talkBalloon.draw(g, waitLines, "Twim", titleY, false);
+
+        /** Transfer progress below the balloon */
+        g.setColor(Theme.COLOR_TEXT);
+        g.setFont(statusFont);
+        g.drawString(progressText, getWidth()/2, titleY + balloonHeight + statusFont.getHeight(),
+                Graphics.HCENTER|Graphics.BOTTOM);
+
+        drawCancelButton(g);
+    }
+
+    private void drawCancelButton(Graphics g) {
+        int fontHeight = statusFont.getHeight();
+        cancelBoxHeight = fontHeight*2;
+        int top = getHeight() - cancelBoxHeight;
+        g.setColor(0xaaaaaa);
+        g.fillRect(0, top, getWidth(), cancelBoxHeight);
+        g.setColor(0x444444);
+        g.drawLine(0, top, getWidth(), top);
+        g.drawString(CANCEL_LABEL, getWidth() - fontHeight/2,
+                top + cancelBoxHeight/2 + fontHeight/2, Graphics.RIGHT|Graphics.BOTTOM);
+    }
+
+    /** Abort the request and return to the timeline */
+    private void cancelTask() {
+        future.cancel();
+        controller.showTimelineBeforeRequest();
+    }
+
+    protected void keyPressed(int keyCode) {
+        String keyName = getKeyName(keyCode);
+        if(keyName.indexOf("SOFT")>=0 ||
+                (Device.isNokia() && (keyCode==-6 || keyCode==-7)) ||
+                keyCode==Canvas.KEY_STAR ||
+                keyCode==Canvas.KEY_POUND) {
+            cancelTask();
+        }
     }
 
-    public void run() {
-        task.execute(); 
-        while(controller.getCurrentDisplay() == this) {            
-            try {
-                Thread.sleep(500);
-                waitText += ".";
-                this.repaint();
-                Thread.yield();
-            }catch(Exception ex) {
-                Log.error("WaitCanvas.run: " + ex.getMessage());
+    protected void pointerPressed(int x, int y) {
+        if(y>getHeight() - cancelBoxHeight) {
+            cancelTask();
+        }
+    }
+
+    /** Get progress as "12.3 kB, 20 statuses, 5 s" */
+    private String formatProgress() {
+        StringBuffer text = new StringBuffer();
+        int bytes = progress.getBytesReceived() + progress.getBytesSent();
+        text.append(bytes/1024).append('.').append(bytes%1024*10/1024).append(" kB");
+        int items = progress.getItemCount();
+        if(items>0) {
+            text.append(", ").append(items).append(items==1 ? " status" : " statuses");
+        }
+        text.append(", ").append(progress.getElapsedTime()/1000).append(" s");
+        return text.toString();
+    }
+
+    /** Show progress of the task until the canvas is no longer shown */
+    private class ProgressTimerTask extends TimerTask {
+
+        public void run() {
+            if(controller.getCurrentDisplay() != WaitCanvas.this) {
+                cancel();
+                return;
             }
+            progressText = formatProgress();
+            repaint();
         }
+
     }
     
 }
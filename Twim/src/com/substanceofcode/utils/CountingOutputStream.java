@@ -0,0 +1,67 @@
+/*
+ * CountingOutputStream.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+import com.substanceofcode.tasks.TaskProgress;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written to the request body.
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class CountingOutputStream extends OutputStream {
+
+    private OutputStream stream;
+
+    /** Progress of the task writing the stream or null */
+    private TaskProgress progress;
+
+    public CountingOutputStream(OutputStream stream, TaskProgress progress) {
+        this.stream = stream;
+        this.progress = progress;
+    }
+
+    public void write(int b) throws IOException {
+        stream.write(b);
+        count(1);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        stream.write(bytes, offset, length);
+        count(length);
+    }
+
+    private void count(int byteCount) {
+        HttpTransferStatus.addSentBytes(byteCount);
+        if(progress!=null) {
+            progress.addSentBytes(byteCount);
+        }
+    }
+
+    public void flush() throws IOException {
+        stream.flush();
+    }
+
+    public void close() throws IOException {
+        stream.close();
+    }
+
+}
@@ -1,6 +1,6 @@
 /*
  * CustomInputStream.java
- * 
+ *
  * Copyright (C) 2005-2009 Tommi Laukkanen
  * http://www.substanceofcode.com
  *
@@ -19,46 +19,419 @@
 
 package com.substanceofcode.utils;
 
+import com.substanceofcode.tasks.TaskProgress;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 
 /**
- * InputStream wrapper so that we can get the total amount of bytes transferred
- * count.
+ * Buffered character stream that counts the amount of bytes transferred.
+ * UTF-8 and ISO-8859-1 are decoded directly from the byte buffer. The
+ * charset is taken from the Content-Type header, byte order mark or XML
+ * declaration and defaults to UTF-8. Raw response text is captured only
+ * when requested for diagnostics.
  * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
  */
 public class CustomInputStream {
 
+    private static final int BUFFER_SIZE = 1024;
+
+    /** Bytes needed for detecting byte order mark and XML declaration */
+    private static final int DETECT_SIZE = 128;
+
+    private static final int UTF8 = 0;
+    private static final int LATIN1 = 1;
+    private static final int OTHER = 2;
+
+    /** UTF-8 sequence length by lead byte >> 3, 0 for invalid lead byte */
+    private static final byte[] SEQUENCE_LENGTH = {
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        0, 0, 0, 0, 0, 0, 0, 0, 2, 2, 2, 2, 3, 3, 4, 0
+    };
+
+    private static final char REPLACEMENT_CHARACTER = '�';
+
     private InputStream stream;
-    private InputStreamReader reader;
-    private StringBuffer inputBuffer;
-    
+
+    /** Bytes received but not yet decoded */
+    private byte[] byteBuffer = new byte[BUFFER_SIZE];
+    private int bytePosition = 0;
+    private int byteCount = 0;
+    private boolean endOfStream = false;
+
+    /** Decoded characters waiting to be read */
+    private char[] charBuffer = new char[BUFFER_SIZE];
+    private int charPosition = 0;
+    private int charCount = 0;
+
+    /** Charset name from Content-Type header or null */
+    private String charset;
+    private int encoding = UTF8;
+    private boolean encodingDetected = false;
+
+    /** Reader for charsets that are not decoded here */
+    private InputStreamReader reader = null;
+
+    /** Raw response text, null if capture is off */
+    private StringBuffer inputBuffer = null;
+
+    /** Progress of the task reading the stream or null */
+    private TaskProgress progress = null;
+
     public CustomInputStream(InputStream stream) {
-        inputBuffer = new StringBuffer();
+        this(stream, null);
+    }
+
+    /**
+     * Create stream for HTTP response.
+     * @param stream        Response stream.
+     * @param contentType   Value of Content-Type header or null.
+     */
+    public CustomInputStream(InputStream stream, String contentType) {
         this.stream = stream;
-        try {
-            reader = new InputStreamReader(stream, "UTF-8");
-        } catch (UnsupportedEncodingException ex) {
-            reader = new InputStreamReader(stream);
+        this.charset = parseCharset(contentType);
+    }
+
+    /**
+     * Set raw capture on or off. Capture starts from the next character
+     * read and is meant for diagnostics only as it keeps a second copy of
+     * the response in memory.
+     * @param capture true to capture raw response text.
+     */
+    public void setRawCapture(boolean capture) {
+        if(capture && inputBuffer==null) {
+            inputBuffer = new StringBuffer();
+        } else if(!capture) {
+            inputBuffer = null;
         }
     }
-    
+
+    /** Count received bytes also to the progress of given task */
+    public void setProgress(TaskProgress progress) {
+        this.progress = progress;
+    }
+
     public int read() throws IOException {
-        HttpTransferStatus.addReceivedBytes(1);
-        int next = reader.read();
-        inputBuffer.append((char)next);
-        //System.out.print((char)next);
-        return next;
+        if(charPosition==charCount && fill()==false) {
+            return -1;
+        }
+        return charBuffer[charPosition++];
+    }
+
+    /**
+     * Read characters into given array.
+     * @return Number of characters read or -1 at end of stream.
+     */
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if(charPosition==charCount && fill()==false) {
+            return -1;
+        }
+        int count = charCount - charPosition;
+        if(count>length) {
+            count = length;
+        }
+        System.arraycopy(charBuffer, charPosition, chars, offset, count);
+        charPosition += count;
+        return count;
+    }
+
+    /** Decode next block of characters, false at end of stream */
+    private boolean fill() throws IOException {
+        if(!encodingDetected) {
+            detectEncoding();
+        }
+        int count;
+        if(reader!=null) {
+            count = reader.read(charBuffer, 0, charBuffer.length);
+        } else {
+            count = decode();
+        }
+        charPosition = 0;
+        if(count<=0) {
+            charCount = 0;
+            return false;
+        }
+        charCount = count;
+        if(inputBuffer!=null) {
+            inputBuffer.append(charBuffer, 0, count);
+        }
+        return true;
+    }
+
+    /** Decode buffered bytes, reading more when needed */
+    private int decode() throws IOException {
+        while(true) {
+            int count;
+            if(encoding==LATIN1) {
+                count = decodeLatin1();
+            } else {
+                count = decodeUtf8();
+            }
+            if(count>0) {
+                return count;
+            }
+            if(endOfStream) {
+                return -1;
+            }
+            readBytes();
+        }
+    }
+
+    private int decodeLatin1() {
+        int count = byteCount - bytePosition;
+        if(count>charBuffer.length) {
+            count = charBuffer.length;
+        }
+        for(int index=0; index<count; index++) {
+            charBuffer[index] = (char)(byteBuffer[bytePosition + index] & 0xFF);
+        }
+        bytePosition += count;
+        return count;
+    }
+
+    /**
+     * Decode complete UTF-8 sequences from the byte buffer. A sequence cut
+     * at the end of the buffer is left for the next block. Malformed input
+     * is replaced with U+FFFD.
+     */
+    private int decodeUtf8() {
+        byte[] bytes = byteBuffer;
+        char[] chars = charBuffer;
+        int position = bytePosition;
+        int end = byteCount;
+        int count = 0;
+        /** Leave room for a surrogate pair */
+        int limit = chars.length - 1;
+        while(position<end && count<limit) {
+            int lead = bytes[position] & 0xFF;
+            if(lead<0x80) {
+                chars[count++] = (char)lead;
+                position++;
+                continue;
+            }
+            int length = SEQUENCE_LENGTH[lead >> 3];
+            if(length==0) {
+                chars[count++] = REPLACEMENT_CHARACTER;
+                position++;
+                continue;
+            }
+            if(position + length>end) {
+                if(!endOfStream) {
+                    break;
+                }
+                /** Truncated sequence at end of stream */
+                chars[count++] = REPLACEMENT_CHARACTER;
+                position = end;
+                break;
+            }
+            int value = lead & (0xFF >> (length + 1));
+            int index = 1;
+            while(index<length) {
+                int next = bytes[position + index] & 0xFF;
+                if((next & 0xC0)!=0x80) {
+                    break;
+                }
+                value = (value << 6) | (next & 0x3F);
+                index++;
+            }
+            position += index;
+            if(index<length) {
+                chars[count++] = REPLACEMENT_CHARACTER;
+            } else if(value>0xFFFF) {
+                value -= 0x10000;
+                chars[count++] = (char)(0xD800 + (value >> 10));
+                chars[count++] = (char)(0xDC00 + (value & 0x3FF));
+            } else {
+                chars[count++] = (char)value;
+            }
+        }
+        bytePosition = position;
+        return count;
     }
 
+    /** Move undecoded bytes to the start of the buffer and read more */
+    private void readBytes() throws IOException {
+        int remaining = byteCount - bytePosition;
+        if(remaining>0 && bytePosition>0) {
+            System.arraycopy(byteBuffer, bytePosition, byteBuffer, 0, remaining);
+        }
+        bytePosition = 0;
+        byteCount = remaining;
+        int bytesRead = stream.read(byteBuffer, byteCount, byteBuffer.length - byteCount);
+        if(bytesRead<0) {
+            endOfStream = true;
+        } else {
+            byteCount += bytesRead;
+            HttpTransferStatus.addReceivedBytes(bytesRead);
+            if(progress!=null) {
+                progress.addReceivedBytes(bytesRead);
+            }
+        }
+    }
+
+    /**
+     * Select decoder by Content-Type charset, byte order mark or XML
+     * declaration, in that order.
+     */
+    private void detectEncoding() throws IOException {
+        encodingDetected = true;
+        while(byteCount<DETECT_SIZE && !endOfStream) {
+            readBytes();
+        }
+        String name = charset;
+        if(byteCount>=3
+                && (byteBuffer[0] & 0xFF)==0xEF
+                && (byteBuffer[1] & 0xFF)==0xBB
+                && (byteBuffer[2] & 0xFF)==0xBF) {
+            bytePosition = 3;
+            if(name==null) {
+                name = "UTF-8";
+            }
+        }
+        if(name==null) {
+            name = parseDeclaredEncoding();
+        }
+        if(name==null) {
+            return;
+        }
+        String upperName = name.toUpperCase();
+        if(upperName.equals("UTF-8") || upperName.equals("UTF8")) {
+            encoding = UTF8;
+        } else if(upperName.equals("ISO-8859-1")
+                || upperName.equals("ISO8859_1")
+                || upperName.equals("LATIN1")
+                || upperName.equals("US-ASCII")) {
+            encoding = LATIN1;
+        } else {
+            try {
+                reader = new InputStreamReader(new BufferedBytes(), name);
+                encoding = OTHER;
+            } catch (UnsupportedEncodingException ex) {
+                Log.error("Unsupported charset " + name + ", using UTF-8");
+                encoding = UTF8;
+            }
+        }
+    }
+
+    /** Parse encoding from XML declaration in the byte buffer */
+    private String parseDeclaredEncoding() {
+        int position = bytePosition;
+        if(byteCount - position<5
+                || byteBuffer[position]!='<'
+                || byteBuffer[position + 1]!='?') {
+            return null;
+        }
+        int end = position;
+        while(end<byteCount && byteBuffer[end]!='>') {
+            end++;
+        }
+        String declaration = new String(byteBuffer, position, end - position);
+        int index = declaration.indexOf("encoding");
+        if(index<0) {
+            return null;
+        }
+        return parseQuoted(declaration, index + 8);
+    }
+
+    /** Parse charset parameter from Content-Type header value */
+    private static String parseCharset(String contentType) {
+        if(contentType==null) {
+            return null;
+        }
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if(index<0) {
+            return null;
+        }
+        index += 8;
+        int end = contentType.indexOf(';', index);
+        if(end<0) {
+            end = contentType.length();
+        }
+        String value = contentType.substring(index, end).trim();
+        if(value.length()>1 && (value.charAt(0)=='"' || value.charAt(0)=='\'')) {
+            value = value.substring(1, value.length() - 1);
+        }
+        if(value.length()==0) {
+            return null;
+        }
+        return value;
+    }
+
+    /** Parse quoted value after '=' starting from given index */
+    private static String parseQuoted(String text, int index) {
+        int equals = text.indexOf('=', index);
+        if(equals<0) {
+            return null;
+        }
+        int start = equals + 1;
+        while(start<text.length() && text.charAt(start)==' ') {
+            start++;
+        }
+        if(start>=text.length()) {
+            return null;
+        }
+        char quote = text.charAt(start);
+        if(quote!='"' && quote!='\'') {
+            return null;
+        }
+        int end = text.indexOf(quote, start + 1);
+        if(end<0) {
+            return null;
+        }
+        return text.substring(start + 1, end);
+    }
+
+    /** Get captured raw text or empty string if capture is off */
     public String getText() {
+        if(inputBuffer==null) {
+            return "";
+        }
         return inputBuffer.toString();
     }
-    
+
     public void close() throws IOException {
         stream.close();
     }
-    
+
+    /**
+     * Byte stream over the byte buffer for charsets that are decoded with
+     * InputStreamReader.
+     */
+    private class BufferedBytes extends InputStream {
+
+        public int read() throws IOException {
+            while(bytePosition==byteCount) {
+                if(endOfStream) {
+                    return -1;
+                }
+                readBytes();
+            }
+            return byteBuffer[bytePosition++] & 0xFF;
+        }
+
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(length==0) {
+                return 0;
+            }
+            while(bytePosition==byteCount) {
+                if(endOfStream) {
+                    return -1;
+                }
+                readBytes();
+            }
+            int count = byteCount - bytePosition;
+            if(count>length) {
+                count = length;
+            }
+            System.arraycopy(byteBuffer, bytePosition, bytes, offset, count);
+            bytePosition += count;
+            return count;
+        }
+
+        public int available() {
+            return byteCount - bytePosition;
+        }
+    }
+
 }
@@ -0,0 +1,311 @@
+/*
+ * DateParser.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+/**
+ * Parser for the date formats used by Twitter feeds. Dates are parsed
+ * straight from a character range to milliseconds since epoch without
+ * creating any objects. Supported formats:
+ *
+ * Wed Aug 29 20:14:27 +0000 2007      (timelines)
+ * Mon, 13 Jul 2009 20:27:58 +0000     (search and RSS, also 2 digit year)
+ * 09 Nov 2006 23:18:49 EST
+ * 2009-07-13T20:27:58Z                (Atom, also with offset and fraction)
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class DateParser {
+
+    /** Returned for text that is not a valid date */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /** Month and zone names as three lower case letters packed to int */
+    private static final int[] MONTHS = new int[12];
+    private static final int[] ZONES = new int[10];
+    private static final int[] ZONE_OFFSETS = {
+        0, 0, -300, -240, -360, -300, -420, -360, -480, -420
+    };
+    static {
+        String months = "janfebmaraprmayjunjulaugsepoctnovdec";
+        for(int index=0; index<MONTHS.length; index++) {
+            MONTHS[index] = pack(months.charAt(index * 3),
+                    months.charAt(index * 3 + 1), months.charAt(index * 3 + 2));
+        }
+        String zones = "gmtutcestedtcstcdtmstmdtpstpdt";
+        for(int index=0; index<ZONES.length; index++) {
+            ZONES[index] = pack(zones.charAt(index * 3),
+                    zones.charAt(index * 3 + 1), zones.charAt(index * 3 + 2));
+        }
+    }
+
+    private DateParser() {
+    }
+
+    /**
+     * Parse date from string.
+     * @return Milliseconds since epoch or INVALID.
+     */
+    public static long parse(String text) {
+        if(text==null) {
+            return INVALID;
+        }
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Parse date from characters.
+     * @param chars     Buffer containing the date
+     * @param offset    Start of the date
+     * @param length    Length of the date
+     * @return          Milliseconds since epoch or INVALID.
+     */
+    public static long parse(char[] chars, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while(start<end && chars[start]<=' ') {
+            start++;
+        }
+        while(end>start && chars[end - 1]<=' ') {
+            end--;
+        }
+        if(end - start>=10 && isDigit(chars[start]) && chars[start + 4]=='-') {
+            return parseUniversal(chars, start, end);
+        }
+        return parseText(chars, start, end);
+    }
+
+    /** Parse yyyy-mm-ddThh:mm:ss[.fff][Z|+hh:mm] */
+    private static long parseUniversal(char[] chars, int start, int end) {
+        int year = number(chars, start, 4);
+        int month = number(chars, start + 5, 2);
+        int day = number(chars, start + 8, 2);
+        if(chars[start + 7]!='-') {
+            return INVALID;
+        }
+        int position = start + 10;
+        int hours = 0;
+        int minutes = 0;
+        int seconds = 0;
+        int millis = 0;
+        int offsetMinutes = 0;
+        if(position<end) {
+            char separator = chars[position];
+            if((separator!='T' && separator!=' ') || end - position<6
+                    || chars[position + 3]!=':') {
+                return INVALID;
+            }
+            hours = number(chars, position + 1, 2);
+            minutes = number(chars, position + 4, 2);
+            position += 6;
+            if(position<end && chars[position]==':') {
+                if(end - position<3) {
+                    return INVALID;
+                }
+                seconds = number(chars, position + 1, 2);
+                position += 3;
+            }
+            if(position<end && chars[position]=='.') {
+                position++;
+                int scale = 100;
+                while(position<end && isDigit(chars[position])) {
+                    millis += (chars[position] - '0') * scale;
+                    scale /= 10;
+                    position++;
+                }
+            }
+            if(position<end) {
+                char zone = chars[position];
+                if(zone=='+' || zone=='-') {
+                    offsetMinutes = parseOffset(chars, position, end);
+                    if(offsetMinutes==Integer.MIN_VALUE) {
+                        return INVALID;
+                    }
+                } else if(zone!='Z' || position + 1!=end) {
+                    return INVALID;
+                }
+            }
+        }
+        return toMillis(year, month, day, hours, minutes, seconds, millis, offsetMinutes);
+    }
+
+    /**
+     * Parse date where fields are separated by spaces, eg.
+     * Wed Aug 29 20:14:27 +0000 2007 or Mon, 13 Jul 2009 20:27:58 +0000
+     */
+    private static long parseText(char[] chars, int start, int end) {
+        int year = -1;
+        int month = -1;
+        int day = -1;
+        int hours = -1;
+        int minutes = 0;
+        int seconds = 0;
+        int offsetMinutes = 0;
+        int position = start;
+        while(position<end) {
+            char c = chars[position];
+            if(c==' ' || c==',') {
+                position++;
+                continue;
+            }
+            int tokenEnd = position;
+            while(tokenEnd<end && chars[tokenEnd]!=' ' && chars[tokenEnd]!=',') {
+                tokenEnd++;
+            }
+            int tokenLength = tokenEnd - position;
+            if(isDigit(c)) {
+                if(tokenLength>2 && chars[position + 2]==':'
+                        || tokenLength>1 && chars[position + 1]==':') {
+                    /** Time as h:mm or hh:mm:ss */
+                    int colon = chars[position + 1]==':' ? position + 1 : position + 2;
+                    hours = number(chars, position, colon - position);
+                    if(tokenEnd - colon<3) {
+                        return INVALID;
+                    }
+                    minutes = number(chars, colon + 1, 2);
+                    if(tokenEnd - colon>=6 && chars[colon + 3]==':') {
+                        seconds = number(chars, colon + 4, 2);
+                    }
+                } else if(tokenLength==4) {
+                    year = number(chars, position, 4);
+                } else if(tokenLength<=2 && day<0) {
+                    day = number(chars, position, tokenLength);
+                } else if(tokenLength<=2) {
+                    year = number(chars, position, tokenLength);
+                    if(year>=0) {
+                        year += 2000;
+                    }
+                } else {
+                    return INVALID;
+                }
+            } else if(c=='+' || c=='-') {
+                offsetMinutes = parseOffset(chars, position, tokenEnd);
+                if(offsetMinutes==Integer.MIN_VALUE) {
+                    return INVALID;
+                }
+            } else if(tokenLength>=3) {
+                int name = pack(chars[position], chars[position + 1], chars[position + 2]);
+                int monthIndex = indexOf(MONTHS, name);
+                if(monthIndex>=0) {
+                    month = monthIndex + 1;
+                } else if(tokenLength==3) {
+                    int zoneIndex = indexOf(ZONES, name);
+                    if(zoneIndex>=0) {
+                        offsetMinutes = ZONE_OFFSETS[zoneIndex];
+                    }
+                }
+            }
+            /** Week days, UT and military zones are ignored */
+            position = tokenEnd;
+        }
+        if(hours<0) {
+            return INVALID;
+        }
+        return toMillis(year, month, day, hours, minutes, seconds, 0, offsetMinutes);
+    }
+
+    /**
+     * Parse zone offset +hhmm, +hh:mm or +hh.
+     * @return Offset in minutes or Integer.MIN_VALUE if invalid.
+     */
+    private static int parseOffset(char[] chars, int start, int end) {
+        int length = end - start;
+        int hours;
+        int minutes = 0;
+        if(length==5) {
+            hours = number(chars, start + 1, 2);
+            minutes = number(chars, start + 3, 2);
+        } else if(length==6 && chars[start + 3]==':') {
+            hours = number(chars, start + 1, 2);
+            minutes = number(chars, start + 4, 2);
+        } else if(length==3) {
+            hours = number(chars, start + 1, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if(hours<0 || minutes<0) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = hours * 60 + minutes;
+        return chars[start]=='-' ? -offset : offset;
+    }
+
+    /** Validate fields and convert them to milliseconds since epoch */
+    private static long toMillis(int year, int month, int day, int hours,
+            int minutes, int seconds, int millis, int offsetMinutes) {
+        if(year<0 || month<1 || month>12 || day<1 || day>31
+                || hours<0 || hours>23 || minutes<0 || minutes>59
+                || seconds<0 || seconds>60) {
+            return INVALID;
+        }
+        long days = daysFromEpoch(year, month, day);
+        long total = ((days * 24 + hours) * 60 + minutes - offsetMinutes) * 60 + seconds;
+        return total * 1000 + millis;
+    }
+
+    /** Days from 1970-01-01 to given date in the proleptic Gregorian calendar */
+    static long daysFromEpoch(int year, int month, int day) {
+        if(month<=2) {
+            year--;
+        }
+        int era = (year>=0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month>2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /** Parse fixed count of digits, -1 if not digits */
+    private static int number(char[] chars, int start, int count) {
+        int value = 0;
+        for(int index=start; index<start + count; index++) {
+            char c = chars[index];
+            if(!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c>='0' && c<='9';
+    }
+
+    private static int pack(char first, char second, char third) {
+        return (lowerCase(first) << 16) | (lowerCase(second) << 8) | lowerCase(third);
+    }
+
+    private static int lowerCase(char c) {
+        if(c>='A' && c<='Z') {
+            return c + ('a' - 'A');
+        }
+        return c & 0xFF;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for(int index=0; index<values.length; index++) {
+            if(values[index]==value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+}
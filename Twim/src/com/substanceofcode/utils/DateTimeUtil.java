@@ -24,7 +24,6 @@ package com.substanceofcode.utils;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 
 /**
  * <p>This class provides methods for dealing with Dates and Times.</p>
@@ -109,30 +108,14 @@ public abstract class DateTimeUtil {
      * Get date from given date stamp.
      * Format: yyyy-mm-ddThh:mm:ssZ
      * @param stamp
-     * @return
+     * @return Date or null if stamp is not valid.
      */
     public static Date getDateFromUniversalDateStamp(String stamp) {
-        Log.debug("Parsing date: " + stamp);
-        String year = stamp.substring(0,4);
-        String month = stamp.substring(5,7);
-        String day = stamp.substring(8,10);
-        String hour = stamp.substring( 11,13 );
-        String minutes = stamp.substring( 14,16 );
-        String seconds = stamp.substring( 17,19 );
-
-        //Log.debug(year+"-"+month+"-"+day+"T"+hour+":"+minutes+":"+seconds);
-
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeZone(TimeZone.getTimeZone("UNC+0"));
-        cal.set(Calendar.YEAR, Integer.parseInt(year) );
-        cal.set(Calendar.MONTH, Integer.parseInt(month)-1 );
-        cal.set(Calendar.DAY_OF_MONTH, Integer.parseInt(day) );
-        cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(hour) );
-        cal.set(Calendar.MINUTE, Integer.parseInt(minutes) );
-        cal.set(Calendar.SECOND, Integer.parseInt(seconds) );
-
-        Date date = cal.getTime();
-        return date;
+        long time = DateParser.parse(stamp);
+        if(time==DateParser.INVALID) {
+            return null;
+        }
+        return new Date(time);
     }
     
     /** 
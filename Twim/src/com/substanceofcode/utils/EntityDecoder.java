@@ -0,0 +1,210 @@
+/*
+ * EntityDecoder.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+/**
+ * Single pass decoder for named, decimal and hexadecimal character
+ * references. Every reference is longer than its replacement so the
+ * characters are decoded in place. Instances are not thread safe.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class EntityDecoder {
+
+    /** Entity names in ascending character order for binary search */
+    private static final String[] NAMES = {
+        "Aring", "Auml", "Ouml", "Uuml", "aacute", "agrave", "amp", "apos",
+        "aring", "auml", "ccedil", "copy", "deg", "eacute", "egrave", "euro",
+        "gt", "hellip", "laquo", "ldquo", "lsquo", "lt", "mdash", "nbsp",
+        "ndash", "ouml", "quot", "raquo", "rdquo", "reg", "rsquo", "szlig",
+        "trade", "uuml"
+    };
+
+    /** Replacement for each entity in NAMES */
+    private static final String[] VALUES = {
+        "Å", "Ä", "Ö", "Ü", "á", "à", "&", "'",
+        "å", "ä", "ç", "©", "°", "é", "è", "€",
+        ">", "...", "«", "\"", "'", "<", "-", " ",
+        "-", "ö", "\"", "»", "\"", "®", "'", "ß",
+        "™", "ü"
+    };
+
+    /** Longest reference between '&' and ';' that is looked up */
+    private static final int MAX_REFERENCE_LENGTH = 8;
+
+    /** Reusable buffer for decoding strings */
+    private char[] buffer = new char[256];
+
+    /** Write position after the last replacement */
+    private int decodedEnd;
+
+    /** Creates a new instance of EntityDecoder */
+    public EntityDecoder() {
+    }
+
+    /**
+     * Decode references in given string.
+     * @param text  Text containing references (eg. &amp;lt;b&amp;gt;)
+     * @return      Decoded text (eg. &lt;b&gt;)
+     */
+    public String decode(String text) {
+        if(text==null) {
+            return null;
+        }
+        int length = text.length();
+        if(length>buffer.length) {
+            buffer = new char[length + 64];
+        }
+        text.getChars(0, length, buffer, 0);
+        int decodedLength = decode(buffer, 0, length);
+        if(decodedLength==length) {
+            return text;
+        }
+        return new String(buffer, 0, decodedLength);
+    }
+
+    /**
+     * Decode references in place.
+     * @param chars     Characters to decode
+     * @param offset    Start of the text
+     * @param length    Length of the text
+     * @return          Length of the decoded text
+     */
+    public int decode(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int read = offset;
+        int write = offset;
+        while(read<end) {
+            char c = chars[read];
+            if(c=='&') {
+                int consumed = decodeReference(chars, read, end, write);
+                if(consumed>0) {
+                    read += consumed;
+                    write = decodedEnd;
+                    continue;
+                }
+            }
+            chars[write++] = c;
+            read++;
+        }
+        return write - offset;
+    }
+
+    /**
+     * Decode reference starting at '&'.
+     * @return Number of characters consumed or 0 if not a reference.
+     */
+    private int decodeReference(char[] chars, int start, int end, int write) {
+        int nameStart = start + 1;
+        int semicolon = nameStart;
+        int limit = Math.min(end, nameStart + MAX_REFERENCE_LENGTH + 1);
+        while(semicolon<limit && chars[semicolon]!=';') {
+            semicolon++;
+        }
+        if(semicolon>=limit || semicolon==nameStart) {
+            return 0;
+        }
+        if(chars[nameStart]=='#') {
+            int value = parseNumber(chars, nameStart + 1, semicolon);
+            if(value<=0 || value>0xFFFF) {
+                return 0;
+            }
+            chars[write] = foldCharacter((char)value);
+            decodedEnd = write + 1;
+            return semicolon - start + 1;
+        }
+        int index = findName(chars, nameStart, semicolon);
+        if(index<0) {
+            return 0;
+        }
+        String value = VALUES[index];
+        int valueLength = value.length();
+        value.getChars(0, valueLength, chars, write);
+        decodedEnd = write + valueLength;
+        return semicolon - start + 1;
+    }
+
+    /** Parse decimal or 'x' prefixed hexadecimal number, -1 if invalid */
+    private static int parseNumber(char[] chars, int start, int end) {
+        int radix = 10;
+        if(start<end && (chars[start]=='x' || chars[start]=='X')) {
+            radix = 16;
+            start++;
+        }
+        if(start==end) {
+            return -1;
+        }
+        int value = 0;
+        for(int index=start; index<end; index++) {
+            int digit = Character.digit(chars[index], radix);
+            if(digit<0) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value;
+    }
+
+    /** Binary search entity name, -1 if unknown */
+    private static int findName(char[] chars, int start, int end) {
+        int low = 0;
+        int high = NAMES.length - 1;
+        while(low<=high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(NAMES[middle], chars, start, end);
+            if(comparison<0) {
+                low = middle + 1;
+            } else if(comparison>0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(String name, char[] chars, int start, int end) {
+        int nameLength = name.length();
+        int length = end - start;
+        int common = Math.min(nameLength, length);
+        for(int index=0; index<common; index++) {
+            int difference = name.charAt(index) - chars[start + index];
+            if(difference!=0) {
+                return difference;
+            }
+        }
+        return nameLength - length;
+    }
+
+    /** Fold typographic quotes to characters found in all device fonts */
+    private static char foldCharacter(char c) {
+        switch(c) {
+            case '‘':
+            case '’':
+                return '\'';
+            case '“':
+            case '”':
+                return '"';
+            default:
+                return c;
+        }
+    }
+
+}
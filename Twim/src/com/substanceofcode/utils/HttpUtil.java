@@ -19,6 +19,7 @@
 
 package com.substanceofcode.utils;
 
+import com.substanceofcode.tasks.TaskProgress;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -75,12 +76,17 @@ public class HttpUtil extends HttpAbstractUtil {
         DataInputStream dis = null;
         String response = "";
         lastResponseCode = 0;
+        TaskProgress progress = TaskProgress.getCurrent();
         try {
             /**
              * Open an HttpConnection with the Web server
              * The default request method is GET
              */
             hc = (HttpConnection) Connector.open( url );
+            if(progress!=null) {
+                /** Cancelling the task closes the connection */
+                progress.setConnection(hc);
+            }
             hc.setRequestMethod(requestMethod);
             /** Some web servers requires these properties */
             //hc.setRequestProperty("User-Agent",
@@ -114,7 +120,6 @@ public class HttpUtil extends HttpAbstractUtil {
              * and forward it to XML parser
              */
             InputStream his = hc.openInputStream();
-            CustomInputStream is = new CustomInputStream(his);
 
             /** Check for the cookie */
             String sessionCookie = hc.getHeaderField("Set-cookie");
@@ -128,6 +133,8 @@ public class HttpUtil extends HttpAbstractUtil {
 
             lastResponseCode = hc.getResponseCode();
             lastResponseContentType = hc.getHeaderField("Content-Type");
+            CustomInputStream is = new CustomInputStream(his, lastResponseContentType);
+            is.setProgress(progress);
             
             String header = "";
             int headerIndex = 0;
@@ -145,10 +152,11 @@ public class HttpUtil extends HttpAbstractUtil {
                 StringBuffer inputBuffer = new StringBuffer();
 
                 // Read all data to buffer
-                int inputCharacter;
+                char[] chars = new char[512];
+                int count;
                 try {
-                    while ((inputCharacter = is.read()) != -1) {
-                        inputBuffer.append((char) inputCharacter);
+                    while ((count = is.read(chars, 0, chars.length)) != -1) {
+                        inputBuffer.append(chars, 0, count);
                     }
                 } catch (IOException ex) {
                     Log.error("Error while reading response: " + ex.getMessage());
@@ -172,6 +180,9 @@ public class HttpUtil extends HttpAbstractUtil {
         } catch (Exception e) {
             throw new Exception("Error while posting: " + e.toString());
         } finally {
+            if (progress != null) {
+                progress.setConnection(null);
+            }
             if (hc != null) {
                 hc.close();
             }
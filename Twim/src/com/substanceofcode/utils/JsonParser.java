@@ -0,0 +1,352 @@
+/*
+ * JsonParser.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+import java.io.IOException;
+
+/**
+ * Simple and lightweight pull parser for JSON documents. Field names are
+ * looked up in a symbol table so that parsers can dispatch on path ids
+ * (eg. user/screen_name) in the same way as with XmlParser. Values that
+ * are not needed can be skipped without creating any strings.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class JsonParser {
+
+    /** Enumerations for next function */
+    public static final int END_DOCUMENT = 0;
+    public static final int START_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int START_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int FIELD_NAME = 5;
+    public static final int VALUE_STRING = 6;
+    public static final int VALUE_NUMBER = 7;
+    public static final int VALUE_TRUE = 8;
+    public static final int VALUE_FALSE = 9;
+    public static final int VALUE_NULL = 10;
+
+    private CustomInputStream inputStream;
+    private XmlSymbolTable symbolTable;
+
+    /** Character read ahead after numbers and literals, -2 if none */
+    private int nextCharacter = -2;
+
+    /** Reusable buffer for field names and values */
+    private char[] textChars = new char[256];
+    private int textLength = 0;
+
+    /** Open objects and arrays */
+    private boolean[] containerIsArray = new boolean[16];
+    private int[] containerPathStart = new int[16];
+    private int depth = 0;
+    private boolean fieldNameExpected = false;
+
+    /** Field name symbols from root to current field */
+    private int[] path = new int[16];
+    private int pathLength = 0;
+    private int pathId = XmlSymbolTable.UNKNOWN;
+    private boolean pathIdValid = false;
+
+    /**
+     * Creates a new instance of JsonParser
+     * @param inputStream   Stream containing JSON document.
+     * @param symbolTable   Paths reported by getPathId().
+     */
+    public JsonParser(CustomInputStream inputStream, XmlSymbolTable symbolTable) {
+        this.inputStream = inputStream;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Parse next token.
+     * @return Token type or end-of-document.
+     * @throws java.io.IOException if document is malformed.
+     */
+    public int next() throws IOException {
+        int c = readSignificant();
+        switch(c) {
+            case -1:
+                return END_DOCUMENT;
+            case '{':
+                push(false);
+                fieldNameExpected = true;
+                return START_OBJECT;
+            case '[':
+                push(true);
+                fieldNameExpected = false;
+                return START_ARRAY;
+            case '}':
+                pop();
+                return END_OBJECT;
+            case ']':
+                pop();
+                return END_ARRAY;
+            case '"':
+                readString();
+                if(fieldNameExpected && depth>0 && !containerIsArray[depth - 1]) {
+                    setFieldName();
+                    return FIELD_NAME;
+                }
+                valueCompleted();
+                return VALUE_STRING;
+            case 't':
+                readLiteral(c);
+                valueCompleted();
+                return VALUE_TRUE;
+            case 'f':
+                readLiteral(c);
+                valueCompleted();
+                return VALUE_FALSE;
+            case 'n':
+                readLiteral(c);
+                valueCompleted();
+                return VALUE_NULL;
+            default:
+                if(c=='-' || (c>='0' && c<='9')) {
+                    readLiteral(c);
+                    valueCompleted();
+                    return VALUE_NUMBER;
+                }
+                throw new IOException("Unexpected character in JSON: " + (char)c);
+        }
+    }
+
+    /**
+     * Read the value of the current field as text.
+     * @return Value text, empty string for null, objects and arrays.
+     */
+    public String nextText() throws IOException {
+        int length = readText();
+        if(length==0) {
+            return "";
+        }
+        return new String(textChars, 0, length);
+    }
+
+    /**
+     * Read the value of the current field into the buffer returned by
+     * getTextBuffer() so that it can be parsed without creating a string.
+     * @return Length of the value, 0 for null, objects and arrays.
+     */
+    public int readText() throws IOException {
+        int event = next();
+        if(event==START_OBJECT || event==START_ARRAY) {
+            skipNested();
+            pop();
+            textLength = 0;
+        } else if(event==VALUE_NULL || event==END_OBJECT || event==END_ARRAY) {
+            textLength = 0;
+        }
+        return textLength;
+    }
+
+    /** Get buffer holding the text read by readText() */
+    public char[] getTextBuffer() {
+        return textChars;
+    }
+
+    /** Skip the value of the current field without creating strings */
+    public void skipValue() throws IOException {
+        int c = readSignificant();
+        if(c=='{' || c=='[') {
+            skipNested();
+        } else if(c=='"') {
+            skipString();
+        } else if(c=='}' || c==']' || c==-1) {
+            /** No value, let next() handle the end of container */
+            nextCharacter = c;
+            return;
+        } else {
+            readLiteral(c);
+        }
+        valueCompleted();
+    }
+
+    /** Get text of current field name or value */
+    public String getText() {
+        return new String(textChars, 0, textLength);
+    }
+
+    /** Get number of open objects and arrays */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get id of the longest registered path matching the current field.
+     * @return Path id or XmlSymbolTable.UNKNOWN.
+     */
+    public int getPathId() {
+        if(!pathIdValid) {
+            pathId = symbolTable.matchPath(path, pathLength);
+            pathIdValid = true;
+        }
+        return pathId;
+    }
+
+    /** Get captured raw document or empty string if capture is off */
+    public String getRawData() {
+        return inputStream.getText();
+    }
+
+    private void push(boolean isArray) {
+        if(depth==containerIsArray.length) {
+            boolean[] grownTypes = new boolean[depth * 2];
+            System.arraycopy(containerIsArray, 0, grownTypes, 0, depth);
+            containerIsArray = grownTypes;
+            int[] grownStarts = new int[depth * 2];
+            System.arraycopy(containerPathStart, 0, grownStarts, 0, depth);
+            containerPathStart = grownStarts;
+        }
+        containerIsArray[depth] = isArray;
+        containerPathStart[depth] = pathLength;
+        depth++;
+    }
+
+    private void pop() {
+        if(depth>0) {
+            depth--;
+            pathLength = containerPathStart[depth];
+            pathIdValid = false;
+        }
+        valueCompleted();
+    }
+
+    private void valueCompleted() {
+        fieldNameExpected = depth>0 && !containerIsArray[depth - 1];
+    }
+
+    private void setFieldName() {
+        int position = containerPathStart[depth - 1];
+        if(position==path.length) {
+            int[] grown = new int[path.length * 2];
+            System.arraycopy(path, 0, grown, 0, path.length);
+            path = grown;
+        }
+        path[position] = symbolTable.getSymbol(textChars, textLength);
+        pathLength = position + 1;
+        pathIdValid = false;
+        fieldNameExpected = false;
+    }
+
+    /** Read next character that is not white space or separator */
+    private int readSignificant() throws IOException {
+        int c = nextCharacter;
+        if(c==-2) {
+            c = inputStream.read();
+        }
+        nextCharacter = -2;
+        while(c==' ' || c=='\n' || c=='\r' || c=='\t' || c==',' || c==':') {
+            c = inputStream.read();
+        }
+        return c;
+    }
+
+    /** Read string after opening quote into the text buffer */
+    private void readString() throws IOException {
+        textLength = 0;
+        int c = inputStream.read();
+        while(c!=-1 && c!='"') {
+            if(c=='\\') {
+                c = inputStream.read();
+                switch(c) {
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'u': c = readUnicodeEscape(); break;
+                    default: break;
+                }
+                if(c==-1) {
+                    break;
+                }
+            }
+            append((char)c);
+            c = inputStream.read();
+        }
+    }
+
+    private int readUnicodeEscape() throws IOException {
+        int value = 0;
+        for(int index=0; index<4; index++) {
+            int digit = Character.digit((char)inputStream.read(), 16);
+            if(digit<0) {
+                throw new IOException("Invalid unicode escape in JSON");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /** Read number or literal into the text buffer */
+    private void readLiteral(int c) throws IOException {
+        textLength = 0;
+        while(c!=-1 && !isDelimiter(c)) {
+            append((char)c);
+            c = inputStream.read();
+        }
+        nextCharacter = c;
+    }
+
+    private void skipString() throws IOException {
+        int c = inputStream.read();
+        while(c!=-1 && c!='"') {
+            if(c=='\\') {
+                inputStream.read();
+            }
+            c = inputStream.read();
+        }
+    }
+
+    /** Skip to the end of an object or array that has just been opened */
+    private void skipNested() throws IOException {
+        int level = 1;
+        while(level>0) {
+            int c = inputStream.read();
+            if(c==-1) {
+                return;
+            } else if(c=='"') {
+                skipString();
+            } else if(c=='{' || c=='[') {
+                level++;
+            } else if(c=='}' || c==']') {
+                level--;
+            }
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c==',' || c=='}' || c==']' || c==':'
+                || c==' ' || c=='\n' || c=='\r' || c=='\t';
+    }
+
+    private void append(char c) {
+        if(textLength==textChars.length) {
+            char[] grown = new char[textChars.length * 2];
+            System.arraycopy(textChars, 0, grown, 0, textLength);
+            textChars = grown;
+        }
+        textChars[textLength++] = c;
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * LineBreaker.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.substanceofcode.utils;
+
+import java.util.Hashtable;
+import java.util.Vector;
+import javax.microedition.lcdui.Font;
+
+/**
+ * Wraps text to lines of given pixel width.
+ *
+ * Character widths are measured once per font and kept in a table, and
+ * the end of each line is found with a binary search on the running
+ * width of the text. Lines are broken at spaces, between CJK characters
+ * and, when a word does not fit on a line of its own, after URL
+ * punctuation. A word that has no break opportunity is broken at the
+ * last character that fits.
+ *
+ * Line width is the sum of character widths, which is what
+ * Font.stringWidth gives for fonts without kerning.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class LineBreaker {
+
+    /** Breakers of the fonts in use */
+    private static Hashtable breakers = new Hashtable();
+
+    /** Size of the direct mapped cache of non Latin-1 characters */
+    private static final int CACHE_SIZE = 256;
+
+    /** Characters that may not start a line */
+    private static final String NO_BREAK_BEFORE = "、。，．・：；？！ー々）」』】〕〉》.,;:!?)]}";
+    /** Characters that may not end a line */
+    private static final String NO_BREAK_AFTER = "（「『【〔〈《([{";
+    /** Characters that a long URL can be broken after */
+    private static final String URL_BREAK_AFTER = "/?&=-";
+
+    private Font font;
+    /** Widths of Latin-1 characters, -1 until measured */
+    private int[] latinWidths;
+    private char[] cachedChars;
+    private int[] cachedWidths;
+    /** Running width of the text being wrapped, reused between calls */
+    private int[] advances;
+
+    /**
+     * Create breaker for a font. Use getInstance() to share the measured
+     * widths, subclasses may measure characters without a font.
+     */
+    protected LineBreaker(Font font) {
+        this.font = font;
+        latinWidths = new int[256];
+        for(int index=0; index<latinWidths.length; index++) {
+            latinWidths[index] = -1;
+        }
+        cachedChars = new char[CACHE_SIZE];
+        cachedWidths = new int[CACHE_SIZE];
+        advances = new int[160];
+    }
+
+    /** Get breaker of given font */
+    public static synchronized LineBreaker getInstance(Font font) {
+        LineBreaker breaker = (LineBreaker)breakers.get(font);
+        if(breaker==null) {
+            breaker = new LineBreaker(font);
+            breakers.put(font, breaker);
+        }
+        return breaker;
+    }
+
+    /** Measure advance width of a character */
+    protected int measure(char c) {
+        return font.charWidth(c);
+    }
+
+    /**
+     * Wrap text to lines.
+     * @param text      Text to wrap, newlines always end a line.
+     * @param width     Maximum line width in pixels.
+     * @return Lines of the text.
+     */
+    public synchronized String[] breakLines(String text, int width) {
+        int length = text.length();
+        if(advances.length<length + 1) {
+            advances = new int[length + 32];
+        }
+        boolean hasNewline = false;
+        int total = 0;
+        for(int index=0; index<length; index++) {
+            char c = text.charAt(index);
+            if(c=='\n') {
+                hasNewline = true;
+            }
+            total += charWidth(c);
+            advances[index + 1] = total;
+        }
+        if(total<=width && !hasNewline) {
+            String[] lines = {text};
+            return lines;
+        }
+
+        Vector lines = new Vector();
+        int newline = (hasNewline ? text.indexOf('\n') : -1);
+        int start = 0;
+        while(start<length) {
+            int end = fit(start, length, width);
+            if(newline>=0 && newline<start) {
+                newline = text.indexOf('\n', start);
+            }
+            if(newline>=0 && newline<=end) {
+                lines.addElement(line(text, start, newline));
+                start = newline + 1;
+                continue;
+            }
+            if(end==length) {
+                lines.addElement(line(text, start, end));
+                break;
+            }
+            int lineEnd = findBreak(text, start, end);
+            lines.addElement(line(text, start, lineEnd));
+            start = lineEnd;
+            while(start<length && text.charAt(start)==' ') {
+                start++;
+            }
+        }
+        String[] result = new String[lines.size()];
+        lines.copyInto(result);
+        return result;
+    }
+
+    /**
+     * Find the end of the longest line starting at start that fits to
+     * width, ie. the last index where the running width is in range.
+     */
+    private int fit(int start, int length, int width) {
+        int limit = advances[start] + width;
+        int low = start;
+        int high = length;
+        while(low<high) {
+            int middle = (low + high + 1) >>> 1;
+            if(advances[middle]<=limit) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find where a line that can not be longer than end is broken.
+     * @return End of the line, greater than start.
+     */
+    private static int findBreak(String text, int start, int end) {
+        for(int index=end; index>start; index--) {
+            char c = text.charAt(index);
+            char previous = text.charAt(index - 1);
+            if(c==' ') {
+                return index;
+            }
+            if((isCjk(c) || isCjk(previous))
+                    && NO_BREAK_BEFORE.indexOf(c)<0
+                    && NO_BREAK_AFTER.indexOf(previous)<0) {
+                return index;
+            }
+        }
+        /** A single word, break after URL punctuation if possible */
+        for(int index=end; index>start + 1; index--) {
+            if(URL_BREAK_AFTER.indexOf(text.charAt(index - 1))>=0) {
+                return index;
+            }
+        }
+        /** At least one character per line even if it does not fit */
+        return (end>start ? end : start + 1);
+    }
+
+    /** Create line without the spaces at its end */
+    private static String line(String text, int start, int end) {
+        while(end>start && text.charAt(end - 1)==' ') {
+            end--;
+        }
+        return text.substring(start, end);
+    }
+
+    private static boolean isCjk(char c) {
+        return (c>=0x2E80 && c<=0x9FFF)
+                || (c>=0xF900 && c<=0xFAFF)
+                || (c>=0xFF00 && c<=0xFFEF);
+    }
+
+    private int charWidth(char c) {
+        if(c<256) {
+            int width = latinWidths[c];
+            if(width<0) {
+                width = measure(c);
+                latinWidths[c] = width;
+            }
+            return width;
+        }
+        int slot = c & (CACHE_SIZE - 1);
+        if(cachedChars[slot]!=c) {
+            cachedWidths[slot] = measure(c);
+            cachedChars[slot] = c;
+        }
+        return cachedWidths[slot];
+    }
+
+}
@@ -45,5 +45,13 @@ public class Log {
         System.out.println("ERR: " + entry);
         errors += entry + "\r\n";
     }
+
+    /**
+     * Clear the text returned by getErrors(). Both debug() and error()
+     * collect their entries there, add() only prints.
+     */
+    public static void clear() {
+        errors = "";
+    }
     
 }
@@ -28,6 +28,9 @@ import javax.microedition.lcdui.Font;
  */
 public class StringUtil {
 
+    /** Shared decoder for character references */
+    private static final EntityDecoder entityDecoder = new EntityDecoder();
+
     /** Creates a new instance of StringUtil */
     private StringUtil() {
     }
@@ -114,6 +117,7 @@ public class StringUtil {
                 htmlText = htmlText.substring(htmlEndIndex + 1);
                 htmlStartIndex = htmlText.indexOf("<", 0);
             }
+            plainText += htmlText;
             plainText = plainText.trim();
             plainText = decodeEntities(plainText);
             return plainText;
@@ -124,132 +128,31 @@ public class StringUtil {
     }
 
     private static String decodeEntities(String html) {
-        String result = StringUtil.replace(html, "&lt;", "<");
-        result = StringUtil.replace(result, "&gt;", ">");
-        result = StringUtil.replace(result, "&nbsp;", " ");
-        result = StringUtil.replace(result, "&amp;", "&");
-        result = StringUtil.replace(result, "&auml;", "ä");
-        result = StringUtil.replace(result, "&ouml;", "ö");
-        result = StringUtil.replace(result, "&quot;", "'");
-        result = StringUtil.replace(result, "&#xd;", "\r");
-        return result;
+        synchronized(entityDecoder) {
+            return entityDecoder.decode(html);
+        }
     }
 
     /**
-     * <p>
-     * Takes an array of messages and a 'Screen-width' and returns the same
-     * messages, but any string in that that is wider than 'width' will be
-     * split up into 2 or more Strings that will fit on the screen
-     * </p>
-     *
-     * 'Spliting' up a String is done on the basis of Words, so if a single
-     * WORD is longer than 'width' it will be on a Line on it's own, but
-     * that line WILL be WIDER than 'width'
+     * Wrap messages to lines that fit to given width. Each message starts
+     * a new line, see LineBreaker for how a message is broken to lines.
      *
      * @param message
      * @param width
-     *                the maximum width a string may be before being split
-     *                up.
-     * @return
+     *                the maximum width of a line in pixels
+     * @param font
+     * @return Lines of all messages.
      */
     public static String[] formatMessage(String[] message, int width, Font font) {
+        LineBreaker breaker = LineBreaker.getInstance(font);
+        if (message.length == 1) {
+            return breaker.breakLines(message[0], width);
+        }
         Vector result = new Vector(message.length);
         for (int i = 0; i < message.length; i++) {
-            if (font.stringWidth(message[i]) <= width) {
-                result.addElement(message[i]);
-            } else {
-                String[] splitUp = StringUtil.chopStrings(message[i], " ", font, width);
-                for (int j = 0; j < splitUp.length; j++) {
-                    result.addElement(splitUp[j]);
-                }
-            }
-        }
-
-        String[] finalResult = new String[result.size()];
-        for (int i = 0; i < finalResult.length; i++) {
-            finalResult[i] = (String) result.elementAt(i);
-        }
-        return finalResult;
-    }
-
-    /**
-     * Chops up the 'original' string into 1 or more strings which have a width <= 'width' when
-     * rasterized with the specified Font.
-     *
-     * The exception is if a single WORD is wider than 'width' in which case that word will be on its
-     * own, but it WILL still be longer than 'width'
-     *
-     * @param original The original String which is to be chopped up
-     * @param separator The delimiter for seperating words, this will usuall be the string " "(i.e. 1 space)
-     * @param font The font to use to determine the width of the words/Strings.
-     * @param width The maximum width a single string can be. (inclusive)
-     * @return The chopped up Strings, each smaller than 'width'
-     */
-    public static String[] chopStrings(String origional, String separator, Font font, int width) {
-        final String[] words = split(origional, separator);
-        final Vector result = new Vector();
-        final StringBuffer currentLine = new StringBuffer();
-        String currentToken;
-        String sub1;
-        String sub2;
-
-        int currentWidth = 0;
-        for (int i = 0; i < words.length; i++) {
-            currentToken = words[i];
-
-            if (currentWidth == 0 || currentWidth + font.stringWidth(" " + currentToken) <= width) {
-                if (currentWidth == 0) {
-                    if(font.stringWidth(currentToken)>width) {
-                        /** Chop lines longer then screen width */
-                        sub1 = currentToken;
-                        System.out.println("oversize: " + sub1);
-                        while(sub1.length()>0) {
-                            for(int j=sub1.length()-1; j>=0; j--) {
-                                sub2 = sub1.substring(0, j+1);
-                                if(font.stringWidth(sub2)<=width) {
-                                    System.out.println("Add: " + sub2);
-                                    result.addElement(sub2);
-                                    sub1 = sub1.substring(j+1);
-                                    break;
-                                }
-                            }
-                        }
-                    } else {
-                        currentLine.append(currentToken);
-                        currentWidth += font.stringWidth(currentToken);
-                    }
-                } else {
-                    currentLine.append(' ').append(currentToken);
-                    currentWidth += font.stringWidth(" " + currentToken);
-                }
-            } else {
-                result.addElement(currentLine.toString());
-                currentLine.delete(0, currentLine.length());
-                if(font.stringWidth(" " + currentToken)>width) {
-                    /** Chop lines longer then screen width */
-                    sub1 = currentToken;
-                    //System.out.println("oversize: " + sub1);
-                    while(sub1.length()>0) {
-                        for(int j=sub1.length()-1; j>=0; j--) {
-                            sub2 = sub1.substring(0, j+1);
-                            if(font.stringWidth(sub2 + " ")<=width) {
-                                //System.out.println("Add: " + sub2);
-                                result.addElement(sub2);
-                                sub1 = sub1.substring(j+1);
-                                break;
-                            }
-                        }
-                    }
-                } else {
-                    currentLine.append(currentToken);
-                    currentWidth = font.stringWidth(currentToken);
-                }
-            }
-        }
-        if (currentLine.length() != 0) {
-            String[] lines = split(currentLine.toString(), "\n");
-            for (int line = 0; line < lines.length; line++) {
-                result.addElement(lines[line]);
+            String[] lines = breaker.breakLines(message[i], width);
+            for (int j = 0; j < lines.length; j++) {
+                result.addElement(lines[j]);
             }
         }
 
@@ -257,7 +160,6 @@ public class StringUtil {
         for (int i = 0; i < finalResult.length; i++) {
             finalResult[i] = (String) result.elementAt(i);
         }
-
         return finalResult;
     }
 
@@ -28,15 +28,41 @@ import java.util.Date;
  */
 public class TimeUtil {
 
-    public static String getCurrentTime() {
-        Calendar cal = Calendar.getInstance();
-        int hours = cal.get(Calendar.HOUR_OF_DAY);
-        int minutes = cal.get(Calendar.MINUTE);
-        String currentTime = (hours<10 ? "0" + hours : String.valueOf(hours) );
-        currentTime += ":" + (minutes<10 ? "0" + minutes : String.valueOf(minutes) );
+    /** Clock label and the minute it was formatted in */
+    private static String currentTime;
+    private static long currentTimeMinute = -1;
+
+    /**
+     * Get current time in minutes since epoch. Labels that show time are
+     * computed again only when the minute changes.
+     */
+    public static long getMinute() {
+        return System.currentTimeMillis() / 60000L;
+    }
+
+    /** Get current time as hh:mm, formatted once a minute */
+    public static synchronized String getCurrentTime() {
+        long minute = getMinute();
+        if(minute!=currentTimeMinute) {
+            Calendar cal = Calendar.getInstance();
+            int hours = cal.get(Calendar.HOUR_OF_DAY);
+            int minutes = cal.get(Calendar.MINUTE);
+            String time = (hours<10 ? "0" + hours : String.valueOf(hours) );
+            time += ":" + (minutes<10 ? "0" + minutes : String.valueOf(minutes) );
+            currentTime = time;
+            currentTimeMinute = minute;
+        }
         return currentTime;
     }
 
+    /**
+     * Get time from given moment to now.
+     * @param fromSeconds   Seconds since epoch.
+     */
+    public static String getTimeInterval(long fromSeconds) {
+        return formatInterval(System.currentTimeMillis() / 1000L - fromSeconds);
+    }
+
     public static String getTimeInterval(Date fromDate) {
         Calendar cal = Calendar.getInstance();
         Date currentDate = cal.getTime();        
@@ -57,6 +83,11 @@ public class TimeUtil {
         cal.setTime(endDate);        
         
         long intervalSeconds = (endDate.getTime() - startDate.getTime()) / 1000L;
+        return formatInterval(intervalSeconds);
+    }
+
+    /** Format interval as days, hours or minutes */
+    private static String formatInterval(long intervalSeconds) {
         long hours = intervalSeconds / 3600L;
         long minutes = (intervalSeconds % 3600L) / 60L;
         long days = hours / 24L;
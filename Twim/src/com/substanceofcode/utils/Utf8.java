@@ -0,0 +1,135 @@
+/*
+ * Utf8.java
+ *
+ * Copyright (C) 2005-2010 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+/**
+ * UTF-8 conversion for text that is kept in memory as bytes. Most tweets
+ * are ASCII so this halves the size of the text compared to a String.
+ * Each char is encoded separately, surrogate pairs included, so that
+ * decode(encode(text)) always returns the original text.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class Utf8 {
+
+    private Utf8() {
+    }
+
+    /** Encode string to UTF-8 bytes */
+    public static byte[] encode(String text) {
+        int length = text.length();
+        int size = 0;
+        for(int index=0; index<length; index++) {
+            size += size(text.charAt(index));
+        }
+        byte[] bytes = new byte[size];
+        int position = 0;
+        for(int index=0; index<length; index++) {
+            position = put(bytes, position, text.charAt(index));
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode characters to UTF-8 bytes.
+     * @param chars     Buffer containing the text
+     * @param offset    Start of the text
+     * @param length    Length of the text
+     * @return          Encoded text.
+     */
+    public static byte[] encode(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int size = 0;
+        for(int index=offset; index<end; index++) {
+            size += size(chars[index]);
+        }
+        byte[] bytes = new byte[size];
+        int position = 0;
+        for(int index=offset; index<end; index++) {
+            position = put(bytes, position, chars[index]);
+        }
+        return bytes;
+    }
+
+    private static int size(char c) {
+        if(c<0x80) {
+            return 1;
+        } else if(c<0x800) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /** Write encoded char and return position after it */
+    private static int put(byte[] bytes, int position, char c) {
+        if(c<0x80) {
+            bytes[position++] = (byte)c;
+        } else if(c<0x800) {
+            bytes[position++] = (byte)(0xC0 | (c >> 6));
+            bytes[position++] = (byte)(0x80 | (c & 0x3F));
+        } else {
+            bytes[position++] = (byte)(0xE0 | (c >> 12));
+            bytes[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            bytes[position++] = (byte)(0x80 | (c & 0x3F));
+        }
+        return position;
+    }
+
+    /** Decode UTF-8 bytes created by encode() */
+    public static String decode(byte[] bytes) {
+        char[] chars = new char[bytes.length];
+        int length = 0;
+        int index = 0;
+        while(index<bytes.length) {
+            int b = bytes[index++] & 0xFF;
+            if(b<0x80) {
+                chars[length++] = (char)b;
+            } else if(b<0xE0) {
+                chars[length++] = (char)(((b & 0x1F) << 6)
+                        | (bytes[index++] & 0x3F));
+            } else {
+                chars[length++] = (char)(((b & 0x0F) << 12)
+                        | ((bytes[index++] & 0x3F) << 6)
+                        | (bytes[index++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Check if UTF-8 bytes contain given ASCII text.
+     * @return Index of the text or -1 if not found.
+     */
+    public static int indexOf(byte[] bytes, String ascii, int fromIndex) {
+        int last = bytes.length - ascii.length();
+        for(int index=fromIndex; index<=last; index++) {
+            int matched = 0;
+            while(matched<ascii.length()
+                    && bytes[index + matched]==ascii.charAt(matched)) {
+                matched++;
+            }
+            if(matched==ascii.length()) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+}
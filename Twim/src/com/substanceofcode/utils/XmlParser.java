@@ -32,12 +32,37 @@ import java.io.UnsupportedEncodingException;
 public class XmlParser {
     
     CustomInputStream inputStream = null;
-    static String encoding = "UTF-8";
     
     /** Current XML element name (eg. <title> = title) */
-    String currentElementName = "";
-    String currentElementData = "";
+    private char[] nameChars = new char[32];
+    private int nameLength = 0;
+    private String currentElementName = null;
+
+    /** Raw content of the current tag between '<' and '>' */
+    private char[] tagChars = new char[128];
+    private int tagLength = 0;
     boolean currentElementContainsText = false;
+
+    /** Reusable buffer for element text */
+    private char[] textChars = new char[256];
+    private int textLength = 0;
+
+    /** Decoder for character references in text and attributes */
+    private EntityDecoder entityDecoder = new EntityDecoder();
+
+    /** Element symbols from root to current element */
+    private XmlSymbolTable symbolTable = null;
+    private int[] elementStack = new int[16];
+    private int depth = 0;
+    private boolean currentElementClosed = false;
+    private int currentPathId = XmlSymbolTable.UNKNOWN;
+
+    /** Attribute slots as offsets and lengths into tagChars */
+    private int attributeCount = 0;
+    private int[] attributeNameStart = new int[8];
+    private int[] attributeNameLength = new int[8];
+    private int[] attributeValueStart = new int[8];
+    private int[] attributeValueLength = new int[8];
     
     /** Enumerations for parse function */
     public static final int END_DOCUMENT = 0;
@@ -51,6 +76,21 @@ public class XmlParser {
         this.inputStream = inputStream;
     }
     
+    /** 
+     * Creates a new instance of XmlParser with path dispatch
+     * @param inputStream   Stream containing XML document.
+     * @param symbolTable   Paths reported by getPathId().
+     */
+    public XmlParser(CustomInputStream inputStream, XmlSymbolTable symbolTable) {
+        this.inputStream = inputStream;
+        this.symbolTable = symbolTable;
+    }
+    
+    public XmlParser(String xml, XmlSymbolTable symbolTable) {
+        this(xml);
+        this.symbolTable = symbolTable;
+    }
+    
     public XmlParser(String xml) {
         InputStream is;
         try {
@@ -67,80 +107,272 @@ public class XmlParser {
     }
     
     /** 
-     * Parse next element
+     * Parse next element. End tags, comments, processing instructions
+     * and character data between the tags are skipped.
      * @return Element type or end-of-document.
      * @throws java.io.IOException 
      */
     public int parse() throws IOException {
-        
-        boolean parsingElementName = false;
-        boolean elementFound = false;
-        boolean elementStart = false;
-        boolean parsingElementData = false;
-                
-        int inputCharacter;
-        char c;
-        inputCharacter = inputStream.read();
-        
-        while (inputCharacter != -1 && elementFound==false) {
-            c = (char)inputCharacter;
-            
-            if(c=='/' && elementStart==true) {
-                parsingElementName = false;
+        if(currentElementClosed) {
+            popElement();
+        }
+        int c = inputStream.read();
+        while (c != -1) {
+            if(c=='<') {
+                c = inputStream.read();
+                if(c=='/') {
+                    popElement();
+                    c = skipPast('>');
+                } else if(c=='?') {
+                    c = skipPast('>');
+                } else if(c=='!') {
+                    c = skipDeclaration();
+                } else if(c!=-1) {
+                    if(scanTag(c)) {
+                        return ELEMENT;
+                    }
+                    c = inputStream.read();
+                }
+            } else {
+                c = inputStream.read();
             }
-            else if(elementStart==true && (c=='?' || c=='!')) {
-                if(currentElementData.charAt(currentElementData.length()-1)=='<') {
-                    parsingElementName = false;
+        }
+        return END_DOCUMENT;
+    }
+
+    /**
+     * Scan start tag into the tag buffer and index its name and attributes.
+     * @param c First character after '<'.
+     * @return true if tag had a name.
+     */
+    private boolean scanTag(int c) throws IOException {
+        tagLength = 0;
+        char quote = 0;
+        while(c!=-1) {
+            if(quote==0) {
+                if(c=='>') {
+                    break;
+                } else if(c=='"' || c=='\'') {
+                    quote = (char)c;
                 }
+            } else if(c==quote) {
+                quote = 0;
+            }
+            if(tagLength==tagChars.length) {
+                tagChars = grow(tagChars);
+            }
+            tagChars[tagLength++] = (char)c;
+            c = inputStream.read();
+        }
+
+        /** Element name ends at first white space or slash */
+        int index = 0;
+        while(index<tagLength && !isNameEnd(tagChars[index])) {
+            index++;
+        }
+        if(index==0) {
+            return false;
+        }
+        if(index>nameChars.length) {
+            nameChars = new char[index + 16];
+        }
+        System.arraycopy(tagChars, 0, nameChars, 0, index);
+        nameLength = index;
+        currentElementName = null;
+        currentElementContainsText = !(tagLength>0 && tagChars[tagLength-1]=='/');
+        currentElementClosed = !currentElementContainsText;
+        indexAttributes(index);
+        pushElement();
+        return true;
+    }
+
+    /** Push current element and match its path */
+    private void pushElement() {
+        if(depth==elementStack.length) {
+            elementStack = grow(elementStack);
+        }
+        if(symbolTable==null) {
+            elementStack[depth++] = XmlSymbolTable.UNKNOWN;
+            return;
+        }
+        elementStack[depth++] = symbolTable.getSymbol(nameChars, nameLength);
+        currentPathId = symbolTable.matchPath(elementStack, depth);
+    }
+
+    private void popElement() {
+        if(depth>0) {
+            depth--;
+        }
+        currentElementClosed = false;
+    }
+
+    /** Index attribute name and value slots of the current tag */
+    private void indexAttributes(int index) {
+        attributeCount = 0;
+        while(index<tagLength) {
+            while(index<tagLength && isNameEnd(tagChars[index])) {
+                index++;
+            }
+            int nameStart = index;
+            while(index<tagLength && tagChars[index]!='=' && !isNameEnd(tagChars[index])) {
+                index++;
             }
-            if(parsingElementName==true) {
-                if(c==' ' || c=='/' ) {
-                    parsingElementName = false;
-                    parsingElementData = true;
+            int attributeNameEnd = index;
+            while(index<tagLength && isWhiteSpace(tagChars[index])) {
+                index++;
+            }
+            if(attributeNameEnd==nameStart || index>=tagLength || tagChars[index]!='=') {
+                /** Attribute without value */
+                continue;
+            }
+            index++;
+            while(index<tagLength && isWhiteSpace(tagChars[index])) {
+                index++;
+            }
+            int valueStart;
+            int valueEnd;
+            if(index<tagLength && (tagChars[index]=='"' || tagChars[index]=='\'')) {
+                char quote = tagChars[index];
+                valueStart = ++index;
+                while(index<tagLength && tagChars[index]!=quote) {
+                    index++;
                 }
-                else if(c!='>') {
-                    currentElementName += c;
+                valueEnd = index;
+                index++;
+            } else {
+                valueStart = index;
+                while(index<tagLength && !isNameEnd(tagChars[index])) {
+                    index++;
                 }
-            }              
-            if(c=='<') {
-                elementStart = true;
-                parsingElementName = true;
-                parsingElementData = true;
-                currentElementName = "";
-                currentElementData = "";
-            }            
-            if(parsingElementData==true) {
-                currentElementData += c;
+                valueEnd = index;
             }
-            if(c=='>') {
-                if(currentElementName.length()>0) {
-                    elementFound = true;
-                    parsingElementName = false;
-                }
-            }    
+            if(attributeCount==attributeNameStart.length) {
+                attributeNameStart = grow(attributeNameStart);
+                attributeNameLength = grow(attributeNameLength);
+                attributeValueStart = grow(attributeValueStart);
+                attributeValueLength = grow(attributeValueLength);
+            }
+            attributeNameStart[attributeCount] = nameStart;
+            attributeNameLength[attributeCount] = attributeNameEnd - nameStart;
+            attributeValueStart[attributeCount] = valueStart;
+            attributeValueLength[attributeCount] = valueEnd - valueStart;
+            attributeCount++;
+        }
+    }
 
-            if(!elementFound){
-                inputCharacter = inputStream.read();
+    /**
+     * Skip the content of the current element including its closing tag
+     * without creating any strings. Nested elements are not reported.
+     * @throws java.io.IOException 
+     */
+    public void skipElement() throws IOException {
+        if(currentElementClosed) {
+            return;
+        }
+        int level = 1;
+        int c = inputStream.read();
+        while(c!=-1 && level>0) {
+            if(c=='<') {
+                c = inputStream.read();
+                if(c=='/') {
+                    level--;
+                    c = skipPast('>');
+                } else if(c=='!') {
+                    c = skipDeclaration();
+                } else if(c=='?') {
+                    c = skipPast('>');
+                } else {
+                    /** Start tag, nested unless it ends with "/>" */
+                    int last = c;
+                    char quote = 0;
+                    while(c!=-1 && (c!='>' || quote!=0)) {
+                        if(quote==0 && (c=='"' || c=='\'')) {
+                            quote = (char)c;
+                        } else if(c==quote) {
+                            quote = 0;
+                        }
+                        last = c;
+                        c = inputStream.read();
+                    }
+                    if(last!='/') {
+                        level++;
+                    }
+                }
+            }
+            if(level>0 && c!=-1) {
+                c = inputStream.read();
             }
         }
-        
-        if( currentElementData.length()>2 &&
-            currentElementData.charAt( currentElementData.length()-2 )=='/' &&
-            currentElementData.charAt( currentElementData.length()-1 )=='>' ) {
-            currentElementContainsText = false;
-        } else {
-            currentElementContainsText = true;
+        currentElementClosed = true;
+    }
+
+    /** Skip comment, CDATA section or DOCTYPE declaration */
+    private int skipDeclaration() throws IOException {
+        int c = inputStream.read();
+        if(c=='-') {
+            /** Comment ends with "-->" */
+            int dashes = 0;
+            c = inputStream.read();
+            while(c!=-1 && !(c=='>' && dashes>=2)) {
+                dashes = (c=='-' ? dashes+1 : 0);
+                c = inputStream.read();
+            }
+            return c;
+        } else if(c=='[') {
+            /** CDATA section ends with "]]>" */
+            int brackets = 0;
+            c = inputStream.read();
+            while(c!=-1 && !(c=='>' && brackets>=2)) {
+                brackets = (c==']' ? brackets+1 : 0);
+                c = inputStream.read();
+            }
+            return c;
         }
-        
-        if( inputCharacter==-1 ) {
-            return END_DOCUMENT;
-        } else {
-            return ELEMENT;
+        return skipPast('>');
+    }
+
+    /** Read until given character has been consumed */
+    private int skipPast(char end) throws IOException {
+        int c = inputStream.read();
+        while(c!=-1 && c!=end) {
+            c = inputStream.read();
         }
+        return c;
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        return c==' ' || c=='\n' || c=='\r' || c=='\t';
+    }
+
+    private static boolean isNameEnd(char c) {
+        return c=='/' || c=='>' || isWhiteSpace(c);
+    }
+
+    private static char[] grow(char[] array) {
+        char[] grown = new char[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+    
+    /**
+     * Get id of the longest registered path matching the current element.
+     * @return Path id or XmlSymbolTable.UNKNOWN.
+     */
+    public int getPathId() {
+        return currentPathId;
     }
     
     /** Get element name */
     public String getName() {
+        if(currentElementName==null) {
+            currentElementName = new String(nameChars, 0, nameLength);
+        }
         return currentElementName;
     }
 
@@ -151,71 +383,85 @@ public class XmlParser {
 
     /** Get outer XML */
     public String getOuterXml() throws IOException {
-        return "<" + currentElementName + ">"
+        String name = getName();
+        return "<" + name + ">"
                 + getInnerXml()
-                + "</" + currentElementName + ">";
+                + "</" + name + ">";
     }
     
-    /** Get element text including inner xml */
+    /** 
+     * Get element text including inner xml. Text is read in a single pass
+     * until the closing tag of the current element has been consumed.
+     */
     public String getText() throws IOException {
-        //Log.debug("Getting text for element '" + currentElementName + "'");
-        if(currentElementContainsText==false) {
+        //Log.debug("Getting text for element '" + getName() + "'");
+        int length = readText();
+        if(length==0) {
             return "";
         }
-        boolean endParsing = false;
-        String text;
-        StringBuffer textBuffer = new StringBuffer();
-        int inputCharacter;
-        char c;
-        char lastChars[] = new char[3];
-        lastChars[0] = ' ';
-        lastChars[1] = ' ';
-        lastChars[2] = ' ';
-        
-        char elementNameChars[] = new char[2];
-        elementNameChars[0] = currentElementName.charAt( currentElementName.length()-2 );
-        elementNameChars[1] = currentElementName.charAt( currentElementName.length()-1 );
-        while ((inputCharacter = inputStream.read()) != -1 && endParsing==false) {
-            c = (char)inputCharacter;
-            lastChars[0] = lastChars[1];
-            lastChars[1] = c;
-            //System.out.print(c);
+        return new String(textChars, 0, length);
+    }
 
-            textBuffer.append(c);
-            if( lastChars[0] == elementNameChars[0] &&
-                lastChars[1] == elementNameChars[1]) {
-                if( textBuffer.toString().endsWith("</" + currentElementName)) {
-                    endParsing = true;
-                }
-            }
+    /**
+     * Read element text into the buffer returned by getTextBuffer() so
+     * that it can be parsed without creating a string.
+     * @return Length of the decoded text.
+     */
+    public int readText() throws IOException {
+        if(currentElementContainsText==false) {
+            textLength = 0;
+            return 0;
         }
-
-        if (encoding.equals("")) {
-            text = textBuffer.toString();
-        } else {
-            try {
-                text = new String(textBuffer.toString().getBytes(), encoding);
-            } catch (UnsupportedEncodingException e) {
-                Log.add("Couldn't use UTF-8 encoding");
-                try {
-                    text = new String(textBuffer.toString().getBytes(), "UTF8");
-                    encoding = "UTF8";
-                } catch (UnsupportedEncodingException e2) {
-                    Log.add("Couldn't use UTF8 encoding");
-                    text = textBuffer.toString();
-                    encoding = "";
+        
+        /** Number of characters of "</name" matched so far */
+        int matched = 0;
+        int closingLength = nameLength + 2;
+        textLength = 0;
+        int c = inputStream.read();
+        while(c!=-1) {
+            if(matched==closingLength) {
+                if(c=='>') {
+                    break;
+                } else if(isWhiteSpace((char)c)) {
+                    skipPast('>');
+                    break;
                 }
+                /** Longer name with the same prefix, keep it as text */
+                matched = 0;
+            }
+            if(textLength==textChars.length) {
+                textChars = grow(textChars);
             }
+            textChars[textLength++] = (char)c;
+            
+            char expected;
+            if(matched==0) {
+                expected = '<';
+            } else if(matched==1) {
+                expected = '/';
+            } else {
+                expected = nameChars[matched-2];
+            }
+            if(c==expected) {
+                matched++;
+            } else {
+                matched = (c=='<' ? 1 : 0);
+            }
+            c = inputStream.read();
         }
-
-        text = textBuffer.toString();
-        text = StringUtil.replace(text, "</" + currentElementName, "");
+        if(matched==closingLength) {
+            textLength -= closingLength;
+        }
+        currentElementClosed = true;
         
         /** Handle some entities and encoded characters */
-        //Log.add("GetText() before: " + text);
-        text = decodeCharacters(text);
-        //Log.add("GetText() after : " + text);
-        return text;
+        textLength = entityDecoder.decode(textChars, 0, textLength);
+        return textLength;
+    }
+
+    /** Get buffer holding the text read by readText() */
+    public char[] getTextBuffer() {
+        return textChars;
     }
 
     /** 
@@ -223,77 +469,25 @@ public class XmlParser {
      */
     public String getAttributeValue(String attributeName) {
         
-        /** Check whatever the element contains given attribute */
-        int attributeStartIndex = currentElementData.indexOf(attributeName);
-        if( attributeStartIndex<0 ) {
-            return null;
-        }
-        
-        /** Calculate actual value start index */
-        int valueStartIndex = attributeStartIndex + attributeName.length() + 2;
-        
-        /** Check the attribute value end index */
-        int valueEndIndex = currentElementData.indexOf("\"", valueStartIndex);
-        if( valueEndIndex<0 ) {
-            return null;
-        }
-        
-        /** Parse value */
-        String value = currentElementData.substring(valueStartIndex, valueEndIndex);
-        value = decodeCharacters(value);
-        return value;
-    }
-    
-    private String decodeCharacters(String text) {
-        text = StringUtil.replace(text, "&lt;", "<");
-        text = StringUtil.replace(text, "&gt;", ">");
-        text = StringUtil.replace(text, "&nbsp;", " ");
-        text = StringUtil.replace(text, "&quot;", "\"");
-        text = StringUtil.replace(text, "&amp;", "&");
-        text = StringUtil.replace(text, "&auml;", "ä");
-        text = StringUtil.replace(text, "&ouml;", "ö");
-        text = StringUtil.replace(text, "Ã¤", "ä");
-        text = StringUtil.replace(text, "Ã¶", "ö");
-        text = StringUtil.replace(text, "â??", "'");
-        text = StringUtil.replace(text, "&#8217;", "'");
-        text = StringUtil.replace(text, "&#8216;", "'");
-        text = StringUtil.replace(text, "&#8220;", "\"");
-        text = StringUtil.replace(text, "&#8221;", "\"");
-        text = StringUtil.replace(text, "&#39;", "\"");
-        text = StringUtil.replace(text, "â‚¬", "€");
-        text = StringUtil.replace(text, String.valueOf((char)226) + String.valueOf((char)128) + String.valueOf((char)153), "'"); 
-        text = StringUtil.replace(text, String.valueOf((char)226) + String.valueOf((char)128) + String.valueOf((char)166), "..."); 
-        text = StringUtil.replace(text, String.valueOf((char)226) + String.valueOf((char)128) + String.valueOf((char)156), "\""); 
-        text = StringUtil.replace(text, String.valueOf((char)226) + String.valueOf((char)128) + String.valueOf((char)157), "\""); 
-        boolean foundEscape = text.indexOf("&#")>=0;
-        int startIndex = 0;
-        while(foundEscape) {
-            int entityStart = text.indexOf("&#");
-            int entityEnd = text.indexOf(";",entityStart);
-            if(entityStart>=0 && entityEnd>0) {
-                String character = text.substring(entityStart+2, entityEnd);
-                //System.out.print("char:" + character);
-                try {
-                    int charValue = 0;
-                    charValue = Integer.parseInt(character);
-                    //System.out.println("char-val:" + charValue);
-                    
-                    if(charValue>0) {
-                        text = StringUtil.replace(text, "&#" + character + ";", String.valueOf((char)charValue));
-                    }                    
-                } catch(Exception ex) {
-                    // Do nothing...
-                    //System.out.println("char ex:" + ex.toString());
-                }
+        int nameLength = attributeName.length();
+        for(int attribute=0; attribute<attributeCount; attribute++) {
+            if(attributeNameLength[attribute]!=nameLength) {
+                continue;
             }
-            startIndex++;
-            if(startIndex<text.length()) {
-                foundEscape = text.indexOf("&#", startIndex)>=0;
-            } else {
-                foundEscape = false;
+            int start = attributeNameStart[attribute];
+            int index = 0;
+            while(index<nameLength && tagChars[start+index]==attributeName.charAt(index)) {
+                index++;
+            }
+            if(index==nameLength) {
+                String value = new String(
+                        tagChars,
+                        attributeValueStart[attribute],
+                        attributeValueLength[attribute]);
+                return entityDecoder.decode(value);
             }
         }
-        return text;
+        return null;
     }
     
 }
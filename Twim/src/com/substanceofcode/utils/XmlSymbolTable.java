@@ -0,0 +1,180 @@
+/*
+ * XmlSymbolTable.java
+ *
+ * Copyright (C) 2005-2009 Tommi Laukkanen
+ * http://www.substanceofcode.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.substanceofcode.utils;
+
+/**
+ * Table of element names and element paths that a parser is interested
+ * in. Element names are looked up straight from the tokenizer buffer so
+ * that no strings are created while dispatching. Paths like
+ * "status/user/screen_name" match the end of the current element path
+ * and the longest matching path wins. JsonParser uses the same table for
+ * field name paths.
+ *
+ * The table is filled once and can then be shared by parsers running in
+ * different threads.
+ *
+ * @author Tommi Laukkanen (tlaukkanen at gmail dot com)
+ */
+public class XmlSymbolTable {
+
+    /** Id for element names and paths that are not in the table */
+    public static final int UNKNOWN = -1;
+
+    /** Open addressing hash table of element names */
+    private char[][] names = new char[32][];
+    private int[] symbols = new int[32];
+    private int symbolCount = 0;
+
+    /** Registered paths as symbol sequences */
+    private int[][] paths = new int[8][];
+    private int[] pathIds = new int[8];
+    private int pathCount = 0;
+
+    /** Creates a new instance of XmlSymbolTable */
+    public XmlSymbolTable() {
+    }
+
+    /**
+     * Register element path.
+     * @param path      Element names separated by '/' (eg. status/user/id)
+     * @param pathId    Id returned by XmlParser.getPathId() for the path
+     */
+    public void addPath(String path, int pathId) {
+        String[] elementNames = StringUtil.split(path, "/");
+        int[] pathSymbols = new int[elementNames.length];
+        for(int index=0; index<elementNames.length; index++) {
+            pathSymbols[index] = addSymbol(elementNames[index]);
+        }
+        if(pathCount==paths.length) {
+            int[][] grownPaths = new int[pathCount * 2][];
+            System.arraycopy(paths, 0, grownPaths, 0, pathCount);
+            paths = grownPaths;
+            int[] grownIds = new int[pathCount * 2];
+            System.arraycopy(pathIds, 0, grownIds, 0, pathCount);
+            pathIds = grownIds;
+        }
+        paths[pathCount] = pathSymbols;
+        pathIds[pathCount] = pathId;
+        pathCount++;
+    }
+
+    /** Add element name and return its symbol */
+    private int addSymbol(String name) {
+        char[] chars = name.toCharArray();
+        int symbol = getSymbol(chars, chars.length);
+        if(symbol!=UNKNOWN) {
+            return symbol;
+        }
+        if((symbolCount + 1) * 2>names.length) {
+            rehash();
+        }
+        symbol = symbolCount++;
+        insert(chars, symbol);
+        return symbol;
+    }
+
+    private void insert(char[] chars, int symbol) {
+        int mask = names.length - 1;
+        int slot = hash(chars, chars.length) & mask;
+        while(names[slot]!=null) {
+            slot = (slot + 1) & mask;
+        }
+        names[slot] = chars;
+        symbols[slot] = symbol;
+    }
+
+    private void rehash() {
+        char[][] oldNames = names;
+        int[] oldSymbols = symbols;
+        names = new char[oldNames.length * 2][];
+        symbols = new int[oldNames.length * 2];
+        for(int slot=0; slot<oldNames.length; slot++) {
+            if(oldNames[slot]!=null) {
+                insert(oldNames[slot], oldSymbols[slot]);
+            }
+        }
+    }
+
+    /**
+     * Get symbol of element name.
+     * @return Symbol or UNKNOWN if name is not in any path.
+     */
+    int getSymbol(char[] chars, int length) {
+        int mask = names.length - 1;
+        int slot = hash(chars, length) & mask;
+        char[] name;
+        while((name = names[slot])!=null) {
+            if(name.length==length) {
+                int index = 0;
+                while(index<length && name[index]==chars[index]) {
+                    index++;
+                }
+                if(index==length) {
+                    return symbols[slot];
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    private static int hash(char[] chars, int length) {
+        int hash = 0;
+        for(int index=0; index<length; index++) {
+            hash = 31 * hash + chars[index];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Find the longest registered path that matches the end of given
+     * element stack.
+     * @param stack     Element symbols from root to current element
+     * @param depth     Number of elements in the stack
+     * @return          Path id or UNKNOWN.
+     */
+    int matchPath(int[] stack, int depth) {
+        if(depth==0 || stack[depth - 1]==UNKNOWN) {
+            return UNKNOWN;
+        }
+        int current = stack[depth - 1];
+        int bestId = UNKNOWN;
+        int bestLength = 0;
+        for(int path=0; path<pathCount; path++) {
+            int[] pathSymbols = paths[path];
+            int length = pathSymbols.length;
+            if(pathSymbols[length - 1]!=current
+                    || length>depth
+                    || length<=bestLength) {
+                continue;
+            }
+            int index = 2;
+            while(index<=length && pathSymbols[length - index]==stack[depth - index]) {
+                index++;
+            }
+            if(index>length) {
+                bestId = pathIds[path];
+                bestLength = length;
+            }
+        }
+        return bestId;
+    }
+
+}